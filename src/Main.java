@@ -492,7 +492,7 @@ public class Main {
                             break;
                         }
 
-                        System.out.println("Enter 1 to get the successor array or 2 to get the adjacency matrix");
+                        System.out.println("Enter 1 to get the successor array, 2 to get the adjacency matrix or 3 to get the bit adjacency matrix");
                         n = reader.nextInt();
                         if (n == 1) System.out.println(Arrays.toString(grafCreate.get(grafName).toSuccessorArray()));
                         else if (n == 2) {
@@ -500,6 +500,8 @@ public class Main {
                             for (int[] ints : matrix) {
                                 System.out.println(Arrays.toString(ints));
                             }
+                        } else if (n == 3) {
+                            System.out.print(grafCreate.get(grafName).toBitMatrix());
                         } else System.out.println("Unknown command, return to main menu");
                         break;
 
@@ -0,0 +1,360 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Shortest path distances between all the pairs of nodes of a small or medium graph, in an int matrix, one array per
+ * row. Dense graphs are solved with a Floyd-Warshall algorithm working on square tiles of the matrix,
+ * small enough to stay in the cache : for each diagonal tile, the tile itself is updated first, then the tiles of its
+ * row and of its column, then all the other tiles, the tiles of a step running in parallel on the fork-join common pool.
+ * Sparse graphs are solved with a Dijkstra search from every node, or a breadth first search when the graph has no
+ * weight, the sources running in parallel. The method is chosen from the density of the graph.
+ * The weights must not be negative, and an edge without weight costs 1, so a graph without any weight gives hop distances.
+ * The predecessors of the nodes on the shortest paths can be kept in a second matrix, to rebuild the paths.
+ */
+public final class AllPairsShortestPaths {
+
+    /**
+     * Algorithm computing the matrix
+     */
+    public enum Method {
+        /** Floyd-Warshall for dense graphs, Dijkstra for sparse ones */
+        AUTO,
+        /** blocked Floyd-Warshall, in a time proportional to n^3 */
+        FLOYD_WARSHALL,
+        /** one Dijkstra search per node, in a time proportional to n(m + n log n) */
+        DIJKSTRA
+    }
+
+    //side of the square tiles of the Floyd-Warshall algorithm, the three tiles of an update fit in the cache
+    private static final int TILE = 64;
+    //Floyd-Warshall is chosen when the average degree is above the number of nodes divided by DENSITY
+    private static final int DENSITY = 4;
+    //distance of a pair without path while computing, two of them add up without overflow
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    //number of sources a task of the Dijkstra method searches from, sharing its arrays
+    private static final int SOURCES_PER_TASK = 16;
+
+    private final int[] ids;
+    private final int[][] distances;
+    private final int[][] predecessors;
+    private final Method method;
+
+    private AllPairsShortestPaths(int[] ids, int[][] distances, int[][] predecessors, Method method) {
+        this.ids = ids;
+        this.distances = distances;
+        this.predecessors = predecessors;
+        this.method = method;
+    }
+
+    /**
+     * Computes the distances between all the pairs of nodes, with the method fitting the density of the graph
+     * @param g the graph, directed or not
+     * @param paths true to keep the predecessors of the nodes, which doubles the memory, to rebuild the paths
+     * @return the distance matrix
+     * @throws IllegalArgumentException if the graph has a negative weight, or has too heavy weights for its
+     * distances to fit in an int
+     */
+    public static AllPairsShortestPaths of(FrozenGraf g, boolean paths) {
+        return of(g, Method.AUTO, paths);
+    }
+
+    /**
+     * Computes the distances between all the pairs of nodes
+     * @param g the graph, directed or not
+     * @param method the algorithm, or AUTO to choose it from the density of the graph
+     * @param paths true to keep the predecessors of the nodes, which doubles the memory, to rebuild the paths
+     * @return the distance matrix
+     * @throws IllegalArgumentException if the graph has a negative weight, or has too heavy weights for its
+     * distances to fit in an int
+     */
+    public static AllPairsShortestPaths of(FrozenGraf g, Method method, boolean paths) {
+        int n = g.nbNodes();
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] weights = g.costs();
+        int maxWeight = 1;
+        if (weights != null) {
+            for (int u = 0; u < n; u++) {
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    if (weights[k] < 0) throw new IllegalArgumentException("Negative weight on an edge of the node " + g.idAt(u));
+                    maxWeight = Math.max(maxWeight, weights[k]);
+                }
+            }
+        }
+        checkDistances(n, maxWeight);
+        if (method == Method.AUTO) method = (long) targets.length * DENSITY > (long) n * n ? Method.FLOYD_WARSHALL : Method.DIJKSTRA;
+
+        int[][] distances = new int[n][n];
+        int[][] predecessors = paths ? new int[n][n] : null;
+        for (int u = 0; u < n; u++) {
+            Arrays.fill(distances[u], INFINITY);
+            distances[u][u] = 0;
+            if (predecessors != null) Arrays.fill(predecessors[u], -1);
+        }
+        if (method == Method.DIJKSTRA) {
+            dijkstra(g, distances, predecessors);
+        } else {
+            for (int u = 0; u < n; u++) {
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int v = targets[k];
+                    distances[u][v] = Math.min(distances[u][v], weights == null ? 1 : weights[k]);
+                }
+            }
+            floydWarshall(n, distances);
+            if (predecessors != null) predecessors(g, distances, predecessors);
+        }
+        for (int[] row : distances) {
+            for (int v = 0; v < n; v++) {
+                if (row[v] == INFINITY) row[v] = -1;
+            }
+        }
+        return new AllPairsShortestPaths(g.ids(), distances, predecessors, method);
+    }
+
+    /**
+     * Computes the distances between all the pairs of nodes of an adjacency matrix, such as the one built by
+     * {@link Graf#toAdjMatrix()}, with the method fitting its density
+     * @param adjMatrix square matrix where the cell [u][v] is the weight of the edge from u to v, 0 if there is none;
+     * the row and the column i are the node of id i+1
+     * @param paths true to keep the predecessors of the nodes, which doubles the memory, to rebuild the paths
+     * @return the distance matrix
+     * @throws IllegalArgumentException if the matrix is not square, has a negative weight, or has too heavy
+     * weights for its distances to fit in an int
+     */
+    public static AllPairsShortestPaths of(int[][] adjMatrix, boolean paths) {
+        int n = adjMatrix.length;
+        GrafBuilder builder = new GrafBuilder();
+        boolean weighted = false;
+        for (int u = 0; u < n; u++) {
+            builder.addNode(u + 1);
+            if (adjMatrix[u].length != n) throw new IllegalArgumentException("The adjacency matrix is not square");
+            for (int v = 0; v < n; v++) weighted |= adjMatrix[u][v] != 0 && adjMatrix[u][v] != 1;
+        }
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                if (adjMatrix[u][v] == 0) continue;
+                if (weighted) builder.addEdge(u + 1, v + 1, adjMatrix[u][v]);
+                else builder.addEdge(u + 1, v + 1);
+            }
+        }
+        return of(builder.buildFrozen(), Method.AUTO, paths);
+    }
+
+    private static void checkDistances(int n, int maxWeight) {
+        //a shortest path has at most n-1 edges
+        if ((long) Math.max(0, n - 1) * maxWeight >= INFINITY) {
+            throw new IllegalArgumentException("The distances of the graph may not fit in an int, use ShortestPaths");
+        }
+    }
+
+    /**
+     * Runs the blocked Floyd-Warshall algorithm
+     * @param distances matrix holding the weights of the edges and 0 on the diagonal, INFINITY elsewhere
+     */
+    private static void floydWarshall(int n, int[][] distances) {
+        int nbTiles = (n + TILE - 1) / TILE;
+        for (int kb = 0; kb < nbTiles; kb++) {
+            int pivot = kb;
+            update(n, distances, pivot, pivot, pivot);
+            //the tiles of the row and of the column of the pivot only depend on the pivot tile
+            IntStream.range(0, 2 * nbTiles).parallel().forEach(t -> {
+                if (t < nbTiles && t != pivot) update(n, distances, pivot, t, pivot);
+                if (t >= nbTiles && t - nbTiles != pivot) update(n, distances, t - nbTiles, pivot, pivot);
+            });
+            //the other tiles only depend on the tiles of the row and of the column of the pivot
+            IntStream.range(0, nbTiles * nbTiles).parallel().forEach(t -> {
+                int ib = t / nbTiles;
+                int jb = t % nbTiles;
+                if (ib != pivot && jb != pivot) update(n, distances, ib, jb, pivot);
+            });
+        }
+    }
+
+    /**
+     * Shortens the paths of the tile (ib, jb) going through the nodes of the tile kb
+     */
+    private static void update(int n, int[][] distances, int ib, int jb, int kb) {
+        int iEnd = Math.min(n, (ib + 1) * TILE);
+        int jStart = jb * TILE;
+        int jEnd = Math.min(n, jStart + TILE);
+        int kEnd = Math.min(n, (kb + 1) * TILE);
+        for (int k = kb * TILE; k < kEnd; k++) {
+            int[] rowK = distances[k];
+            for (int i = ib * TILE; i < iEnd; i++) {
+                int[] rowI = distances[i];
+                int dik = rowI[k];
+                if (dik == INFINITY) continue;
+                for (int j = jStart; j < jEnd; j++) {
+                    int distance = dik + rowK[j];
+                    if (distance < rowI[j]) rowI[j] = distance;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the predecessors from the distances : from every node, a breadth first search only follows the edges
+     * on a shortest path, the ones whose cost is the difference of the distances of their ends. The tiles change the
+     * order in which the paths are shortened, so the predecessors are rebuilt from the final distances rather than
+     * kept by Floyd-Warshall
+     */
+    private static void predecessors(FrozenGraf g, int[][] distances, int[][] predecessors) {
+        int n = g.nbNodes();
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] weights = g.costs();
+        IntStream.range(0, (n + SOURCES_PER_TASK - 1) / SOURCES_PER_TASK).parallel().forEach(task -> {
+            int[] queue = new int[n];
+            for (int s = task * SOURCES_PER_TASK; s < Math.min(n, (task + 1) * SOURCES_PER_TASK); s++) {
+                int[] distance = distances[s];
+                int[] predecessor = predecessors[s];
+                int head = 0;
+                int tail = 0;
+                queue[tail++] = s;
+                while (head < tail) {
+                    int u = queue[head++];
+                    for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                        int v = targets[k];
+                        if (v == s || predecessor[v] >= 0) continue;
+                        if (distance[u] + (weights == null ? 1 : weights[k]) != distance[v]) continue;
+                        predecessor[v] = u;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a search from every node, each one filling its own row
+     */
+    private static void dijkstra(FrozenGraf g, int[][] distances, int[][] predecessors) {
+        int n = g.nbNodes();
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] weights = g.costs();
+        IntStream.range(0, (n + SOURCES_PER_TASK - 1) / SOURCES_PER_TASK).parallel().forEach(task -> {
+            IndexedHeap heap = weights == null ? null : new IndexedHeap(n);
+            int[] queue = weights == null ? new int[n] : null;
+            for (int s = task * SOURCES_PER_TASK; s < Math.min(n, (task + 1) * SOURCES_PER_TASK); s++) {
+                int[] distance = distances[s];
+                int[] predecessor = predecessors == null ? null : predecessors[s];
+                if (weights == null) {
+                    int head = 0;
+                    int tail = 0;
+                    queue[tail++] = s;
+                    while (head < tail) {
+                        int u = queue[head++];
+                        for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                            int v = targets[k];
+                            if (distance[v] != INFINITY) continue;
+                            distance[v] = distance[u] + 1;
+                            if (predecessor != null) predecessor[v] = u;
+                            queue[tail++] = v;
+                        }
+                    }
+                } else {
+                    heap.push(s, 0);
+                    while (!heap.isEmpty()) {
+                        int u = heap.pop();
+                        for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                            int v = targets[k];
+                            int d = distance[u] + weights[k];
+                            if (d >= distance[v]) continue;
+                            distance[v] = d;
+                            if (predecessor != null) predecessor[v] = u;
+                            heap.push(v, d);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the distance matrix, the arrays themselves and not copies
+     * @return a matrix where [u][v] is the total weight of a shortest path from the node of compact index u to the
+     * node of compact index v, -1 if there is no path
+     */
+    public int[][] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Gets the predecessor matrix, the arrays themselves and not copies
+     * @return a matrix where [u][v] is the compact index of the node before v on a shortest path from u to v,
+     * -1 if u is v or there is no path, or null if the paths were not kept
+     */
+    public int[][] getPredecessors() {
+        return predecessors;
+    }
+
+    /**
+     * Gets the algorithm which computed the matrix, FLOYD_WARSHALL or DIJKSTRA
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the number of nodes, the number of rows and columns of the matrix
+     */
+    public int nbNodes() {
+        return ids.length;
+    }
+
+    /**
+     * Gets the compact index of a node, its row and its column in the matrix
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the graph does not contain it
+     */
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Gets the id of the node stored at a compact index
+     * @param index an index between 0 and the number of nodes -1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the distance between two nodes
+     * @param from_id int id of the origin
+     * @param to_id int id of the destination
+     * @return the total weight of a shortest path, -1 if there is no path or a node does not exist
+     */
+    public int getDistance(int from_id, int to_id) {
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        return u < 0 || v < 0 ? -1 : distances[u][v];
+    }
+
+    /**
+     * Gets a shortest path between two nodes, following the predecessors
+     * @param from_id int id of the origin
+     * @param to_id int id of the destination
+     * @return the nodes of the path, from the origin to the destination, or null if there is no path or a node
+     * does not exist
+     * @throws IllegalStateException if the paths were not kept
+     */
+    public List<Node> getPath(int from_id, int to_id) {
+        if (predecessors == null) throw new IllegalStateException("The paths were not kept");
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        if (u < 0 || v < 0 || distances[u][v] < 0) return null;
+        List<Node> path = new ArrayList<>();
+        for (int w = v; w >= 0; w = predecessors[u][w]) path.add(new Node(ids[w]));
+        Collections.reverse(path);
+        return path;
+    }
+}
@@ -0,0 +1,186 @@
+package m1graf2020;
+
+import java.util.Arrays;
+
+/**
+ * Point-to-point shortest path search running from both ends at once, forward from the origin in the graph and
+ * backward from the destination in the reversed graph, until the two searches meet. It is a bidirectional Dijkstra
+ * when the graph has weights, an edge without weight costing 1, and a bidirectional breadth first search, with queues
+ * instead of heaps, when it has none.
+ * The arrays are kept between the queries and only the cells touched by a query are reset, so a query costs the
+ * nodes it touches and not the size of the graph. An instance must not be used by several threads at once.
+ */
+final class BidirectionalSearch {
+    private final FrozenGraf g;
+    private final FrozenGraf reverse;
+    private final long[] forwardDistances;
+    private final long[] backwardDistances;
+    private final int[] forwardParents;
+    private final int[] backwardParents;
+    //queues of the breadth first searches, or heaps of the Dijkstra searches
+    private final int[] forwardQueue;
+    private final int[] backwardQueue;
+    private final IndexedHeap forwardHeap;
+    private final IndexedHeap backwardHeap;
+    //nodes whose cells were set by the last query
+    private int[] touched = new int[64];
+    private int nbTouched;
+    private int nbSettled;
+
+    BidirectionalSearch(FrozenGraf g) {
+        this.g = g;
+        this.reverse = g.getReverse();
+        int n = g.nbNodes();
+        forwardDistances = new long[n];
+        backwardDistances = new long[n];
+        Arrays.fill(forwardDistances, -1);
+        Arrays.fill(backwardDistances, -1);
+        forwardParents = new int[n];
+        backwardParents = new int[n];
+        boolean weighted = g.costs() != null;
+        forwardQueue = weighted ? null : new int[n];
+        backwardQueue = weighted ? null : new int[n];
+        forwardHeap = weighted ? new IndexedHeap(n) : null;
+        backwardHeap = weighted ? new IndexedHeap(n) : null;
+    }
+
+    /**
+     * Finds a shortest path between two nodes
+     * @param s compact index of the origin
+     * @param t compact index of the destination
+     * @return the path, its weight, and the number of nodes settled
+     * @throws IllegalArgumentException if the search meets an edge of negative weight
+     */
+    Route run(int s, int t) {
+        for (int i = 0; i < nbTouched; i++) {
+            forwardDistances[touched[i]] = -1;
+            backwardDistances[touched[i]] = -1;
+        }
+        nbTouched = 0;
+        nbSettled = 0;
+        reach(forwardDistances, forwardParents, s, 0, -1);
+        reach(backwardDistances, backwardParents, t, 0, -1);
+        int meet = g.costs() == null ? breadthFirst(s, t) : dijkstra(s, t);
+        if (meet < 0) return new Route(null, -1, nbSettled);
+
+        int length = 1;
+        for (int u = meet; u != s; u = forwardParents[u]) length++;
+        for (int u = meet; u != t; u = backwardParents[u]) length++;
+        int[] path = new int[length];
+        int k = 0;
+        for (int u = meet; u != s; u = forwardParents[u]) path[k++] = g.idAt(u);
+        path[k++] = g.idAt(s);
+        for (int i = 0, j = k - 1; i < j; i++, j--) {
+            int swap = path[i];
+            path[i] = path[j];
+            path[j] = swap;
+        }
+        for (int u = meet; u != t; ) {
+            u = backwardParents[u];
+            path[k++] = g.idAt(u);
+        }
+        return new Route(path, forwardDistances[meet] + backwardDistances[meet], nbSettled);
+    }
+
+    private void reach(long[] distances, int[] parents, int v, long distance, int parent) {
+        if (forwardDistances[v] < 0 && backwardDistances[v] < 0) {
+            if (nbTouched == touched.length) touched = Arrays.copyOf(touched, nbTouched << 1);
+            touched[nbTouched++] = v;
+        }
+        distances[v] = distance;
+        parents[v] = parent;
+    }
+
+    /**
+     * Expands whole levels of the side with the smaller frontier, until a level finds a node reached by the other side
+     * @return the node the shortest path goes through, or -1 if there is no path
+     */
+    private int breadthFirst(int s, int t) {
+        if (s == t) return s;
+        forwardQueue[0] = s;
+        backwardQueue[0] = t;
+        //frontiers of both sides, from head to tail in their queues
+        int forwardHead = 0;
+        int forwardTail = 1;
+        int backwardHead = 0;
+        int backwardTail = 1;
+        long best = -1;
+        int meet = -1;
+        while (forwardHead < forwardTail && backwardHead < backwardTail) {
+            boolean forward = forwardTail - forwardHead <= backwardTail - backwardHead;
+            FrozenGraf side = forward ? g : reverse;
+            int[] queue = forward ? forwardQueue : backwardQueue;
+            long[] distances = forward ? forwardDistances : backwardDistances;
+            long[] other = forward ? backwardDistances : forwardDistances;
+            int[] parents = forward ? forwardParents : backwardParents;
+            int head = forward ? forwardHead : backwardHead;
+            int tail = forward ? forwardTail : backwardTail;
+            int end = tail;
+            int[] offsets = side.offsets();
+            int[] targets = side.targets();
+            for (; head < end; head++) {
+                int u = queue[head];
+                nbSettled++;
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int v = targets[k];
+                    if (distances[v] >= 0) continue;
+                    reach(distances, parents, v, distances[u] + 1, u);
+                    queue[tail++] = v;
+                    if (other[v] >= 0 && (best < 0 || distances[v] + other[v] < best)) {
+                        best = distances[v] + other[v];
+                        meet = v;
+                    }
+                }
+            }
+            if (meet >= 0) return meet;
+            if (forward) {
+                forwardHead = head;
+                forwardTail = tail;
+            } else {
+                backwardHead = head;
+                backwardTail = tail;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Settles nodes on the side with the smaller key, until the two smallest keys add up to the best path found
+     * @return the node the shortest path goes through, or -1 if there is no path
+     */
+    private int dijkstra(int s, int t) {
+        forwardHeap.clear();
+        backwardHeap.clear();
+        forwardHeap.push(s, 0);
+        backwardHeap.push(t, 0);
+        long best = s == t ? 0 : -1;
+        int meet = s == t ? s : -1;
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+            if (best >= 0 && forwardHeap.minKey() + backwardHeap.minKey() >= best) break;
+            boolean forward = forwardHeap.minKey() <= backwardHeap.minKey();
+            FrozenGraf side = forward ? g : reverse;
+            IndexedHeap heap = forward ? forwardHeap : backwardHeap;
+            long[] distances = forward ? forwardDistances : backwardDistances;
+            long[] other = forward ? backwardDistances : forwardDistances;
+            int[] parents = forward ? forwardParents : backwardParents;
+            int[] offsets = side.offsets();
+            int[] targets = side.targets();
+            int[] weights = side.costs();
+            int u = heap.pop();
+            nbSettled++;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = targets[k];
+                if (weights[k] < 0) throw new IllegalArgumentException("Negative weight on an edge of the node " + g.idAt(u));
+                long distance = distances[u] + weights[k];
+                if (distances[v] >= 0 && distance >= distances[v]) continue;
+                reach(distances, parents, v, distance, u);
+                heap.push(v, distance);
+                if (other[v] >= 0 && (best < 0 || distance + other[v] < best)) {
+                    best = distance + other[v];
+                    meet = v;
+                }
+            }
+        }
+        return meet;
+    }
+}
@@ -0,0 +1,237 @@
+package m1graf2020;
+
+import java.util.Arrays;
+
+/**
+ * Adjacency matrix of a graph stored as bits : one bit per cell, 64 cells per long, each row padded to a whole word.
+ * Rows and columns are the compact indexes of the nodes (0 to size()-1, in increasing id order), so any id space is
+ * supported. Cells can be set and cleared, which makes it a store for dense graphs on its own, and operations on whole
+ * rows (intersection, union, closure) work 64 cells at a time.
+ */
+public final class BitMatrix {
+    private final int[] ids;
+    private final int words;
+    private final long[] bits;
+
+    /**
+     * Builds an empty matrix
+     * @param ids the ids of the nodes, sorted in increasing order
+     * @throws IllegalArgumentException if the matrix has more cells than a long array can hold, above about 370000 nodes
+     */
+    BitMatrix(int[] ids) {
+        this.ids = ids;
+        this.words = (ids.length + 63) >>> 6;
+        //the rows are indexed as row * words in an int, which fits once the whole array does
+        long size = (long) ids.length * words;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The graph has too many nodes for a bit matrix : " + ids.length);
+        }
+        this.bits = new long[(int) size];
+    }
+
+    private BitMatrix(BitMatrix m) {
+        this.ids = m.ids;
+        this.words = m.words;
+        this.bits = m.bits.clone();
+    }
+
+    /**
+     * Builds the bit matrix of a graph
+     * @param g the graph
+     * @return a matrix where the cell (u, v) is set if there is an edge from the node of index u to the node of index v
+     * @throws IllegalArgumentException if the graph has too many nodes for a bit matrix
+     */
+    static BitMatrix of(Graf g) {
+        int[] sorted = g.sortedIndexes();
+        int[] ids = new int[sorted.length];
+        int[] rank = new int[g.nodeBound()];
+        for (int i = 0; i < sorted.length; i++) {
+            ids[i] = g.registry.idAt(sorted[i]);
+            rank[sorted[i]] = i;
+        }
+        BitMatrix m = new BitMatrix(ids);
+        for (int i = 0; i < sorted.length; i++) {
+            int u = sorted[i];
+            int[] successors = g.outTargets.get(u);
+            for (int k = 0; k < g.outDeg.get(u); k++) {
+                m.set(i, rank[successors[k]]);
+            }
+        }
+        return m;
+    }
+
+    long[] bits() { return bits; }
+
+    int words() { return words; }
+
+    /**
+     * Gets the number of rows (and columns) of the matrix
+     * @return the number of nodes
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Gets the compact index of a node
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the matrix does not contain it
+     */
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Gets the id of the node at a compact index
+     * @param index an index between 0 and size()-1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Tests a cell
+     * @param row index of the origin
+     * @param col index of the destination
+     * @return true if there is an edge from row to col
+     */
+    public boolean get(int row, int col) {
+        return (bits[row * words + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Sets a cell, as in adds an edge from row to col
+     */
+    public void set(int row, int col) {
+        bits[row * words + (col >>> 6)] |= 1L << col;
+    }
+
+    /**
+     * Clears a cell, as in removes the edge from row to col
+     */
+    public void clear(int row, int col) {
+        bits[row * words + (col >>> 6)] &= ~(1L << col);
+    }
+
+    /**
+     * Tests the adjacency of two nodes, as in if there is an edge from one to the other
+     * @param u_id an int id representing a node
+     * @param v_id an int id representing another node
+     * @return true if the nodes are adjacent, false if not
+     */
+    public boolean adjacent(int u_id, int v_id) {
+        int u = indexOf(u_id);
+        int v = indexOf(v_id);
+        if (u < 0 || v < 0) return false;
+        return get(u, v) || get(v, u);
+    }
+
+    /**
+     * Tests if there is an edge from one node to another
+     * @param u_id an int id representing a node
+     * @param v_id an int id representing another node
+     * @return true if there is an edge between the two nodes, false if not
+     */
+    public boolean existsEdge(int u_id, int v_id) {
+        return adjacent(u_id, v_id);
+    }
+
+    /**
+     * Gets the number of cells set in a row
+     * @param row index of a node
+     * @return the out-degree of the node
+     */
+    public int outDegree(int row) {
+        int count = 0;
+        for (int w = row * words; w < (row + 1) * words; w++) count += Long.bitCount(bits[w]);
+        return count;
+    }
+
+    /**
+     * Gets the index of the first cell set in a row from a column
+     * @param row index of a node
+     * @param fromCol first column to look at
+     * @return the index of the column, or -1 if there is none
+     */
+    public int nextSetBit(int row, int fromCol) {
+        if (fromCol >= ids.length) return -1;
+        int w = fromCol >>> 6;
+        long word = bits[row * words + w] & (-1L << fromCol);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words) return -1;
+            word = bits[row * words + w];
+        }
+    }
+
+    /**
+     * Gets the indexes of the successors of a node
+     * @param row index of a node
+     * @return the indexes of the columns set in the row, in increasing order
+     */
+    public int[] getSuccessorIndexes(int row) {
+        int[] successors = new int[outDegree(row)];
+        int k = 0;
+        for (int col = nextSetBit(row, 0); col >= 0; col = nextSetBit(row, col + 1)) {
+            successors[k++] = col;
+        }
+        return successors;
+    }
+
+    /**
+     * Counts the nodes which are successors of both nodes, word by word
+     * @param rowA index of a node
+     * @param rowB index of another node
+     * @return the size of the intersection of the two rows
+     */
+    public int commonSuccessors(int rowA, int rowB) {
+        int count = 0;
+        int a = rowA * words;
+        int b = rowB * words;
+        for (int w = 0; w < words; w++) count += Long.bitCount(bits[a + w] & bits[b + w]);
+        return count;
+    }
+
+    /**
+     * Adds all the cells of a row to another, word by word
+     * @param src index of the row to be read
+     * @param dst index of the row to be modified
+     */
+    public void orRow(int src, int dst) {
+        int s = src * words;
+        int d = dst * words;
+        for (int w = 0; w < words; w++) bits[d + w] |= bits[s + w];
+    }
+
+    /**
+     * Computes the transitive closure of the matrix with the Warshall algorithm, on whole rows
+     * @return a new matrix where (u, v) is set if there is a path from u to v
+     */
+    public BitMatrix transitiveClosure() {
+        BitMatrix closure = new BitMatrix(this);
+        for (int k = 0; k < ids.length; k++) {
+            for (int i = 0; i < ids.length; i++) {
+                if (closure.get(i, k)) closure.orRow(k, i);
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * Returns the matrix as rows of 0 and 1, rows and columns in increasing id order
+     * @return a String with one line per row
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (int row = 0; row < ids.length; row++) {
+            for (int col = 0; col < ids.length; col++) {
+                s.append(get(row, col) ? '1' : '0');
+            }
+            s.append('\n');
+        }
+        return s.toString();
+    }
+}
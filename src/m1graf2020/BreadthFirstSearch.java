@@ -0,0 +1,319 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Breadth first search from any set of sources, giving the distance and the parent of every node as int arrays
+ * indexed by the compact indexes of the graph.
+ * Each level is explored either top-down, from the frontier to its successors, or bottom-up, from the nodes not
+ * reached yet to their predecessors in the frontier, whichever checks fewer edges : bottom-up pays off when the
+ * frontier holds a large part of the graph, as a node stops at its first predecessor found.
+ * The frontier is kept as a queue top-down and as a bitset bottom-up, and the nodes of a level are shared between the
+ * threads of the fork-join common pool. Top-down, a node is claimed with a compare-and-set on a bitset of the reached
+ * nodes. Bottom-up, each thread owns a range of 64 node words and needs no synchronisation.
+ */
+public final class BreadthFirstSearch {
+    //switch to bottom-up when the frontier has more than 1/ALPHA of the edges left to check,
+    //back to top-down when it has less than 1/BETA of the nodes
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    //number of frontier nodes, or of nodes bottom-up, handled by a task
+    private static final int CHUNK = 1 << 10;
+
+    private final int[] ids;
+    private final int[] distances;
+    private final int[] parents;
+    private int nbReached;
+    private int depth;
+
+    /**
+     * Runs a breadth first search from several sources, on all the cores
+     * @param g the graph, directed or not
+     * @param source_ids ids of the nodes the search starts from, at distance 0
+     * @return the distances and the parents of the nodes
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public static BreadthFirstSearch from(FrozenGraf g, int... source_ids) {
+        return from(g, true, source_ids);
+    }
+
+    /**
+     * Runs a breadth first search from several sources
+     * @param g the graph, directed or not
+     * @param parallel true to explore the levels on several threads, false to run in the calling thread
+     * @param source_ids ids of the nodes the search starts from, at distance 0
+     * @return the distances and the parents of the nodes
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public static BreadthFirstSearch from(FrozenGraf g, boolean parallel, int... source_ids) {
+        int[] sources = new int[source_ids.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = g.indexOf(source_ids[i]);
+            if (sources[i] < 0) throw new IllegalArgumentException("The graph does not contain the node " + source_ids[i]);
+        }
+        return new BreadthFirstSearch(g, sources, parallel);
+    }
+
+    private BreadthFirstSearch(FrozenGraf g, int[] sources, boolean parallel) {
+        ids = g.ids();
+        int n = ids.length;
+        distances = new int[n];
+        parents = new int[n];
+        Arrays.fill(distances, -1);
+        Arrays.fill(parents, -1);
+        int words = (n + 63) >>> 6;
+        AtomicLongArray reached = new AtomicLongArray(words);
+        FrozenGraf reverse = g.getReverse();
+
+        int[] frontier = new int[n];
+        int[] next = new int[n];
+        long[] frontierBits = new long[words];
+        long[] nextBits = new long[words];
+        int nf = 0;
+        //edges leaving the frontier, and edges coming to the nodes not reached, checked by a bottom-up step
+        long mf = 0;
+        long mu = reverse.offsets()[n];
+        for (int s : sources) {
+            if (!claim(reached, s)) continue;
+            distances[s] = 0;
+            frontier[nf++] = s;
+            mf += outDegree(g, s);
+            mu -= outDegree(reverse, s);
+        }
+        nbReached = nf;
+
+        boolean topDown = true;
+        int level = 0;
+        while (nf > 0) {
+            if (topDown && mf > mu / ALPHA) {
+                topDown = false;
+                Arrays.fill(frontierBits, 0);
+                for (int i = 0; i < nf; i++) frontierBits[frontier[i] >>> 6] |= 1L << frontier[i];
+            } else if (!topDown && nf < n / BETA) {
+                topDown = true;
+                nf = 0;
+                for (int w = 0; w < words; w++) {
+                    for (long word = frontierBits[w]; word != 0; word &= word -1) {
+                        frontier[nf++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                    }
+                }
+            }
+            //counts of each task : nodes reached, their out-degrees and their in-degrees
+            long[] counts = topDown
+                    ? topDown(g, frontier, nf, next, reached, level + 1, parallel)
+                    : bottomUp(reverse, g, frontierBits, nextBits, reached, level + 1, parallel);
+            if (topDown) {
+                int[] swap = frontier;
+                frontier = next;
+                next = swap;
+            } else {
+                long[] swap = frontierBits;
+                frontierBits = nextBits;
+                nextBits = swap;
+            }
+            nf = (int) counts[0];
+            mf = counts[1];
+            mu -= counts[2];
+            nbReached += nf;
+            if (nf > 0) level++;
+        }
+        depth = level;
+    }
+
+    private static int outDegree(FrozenGraf g, int u) {
+        return g.offsets()[u + 1] - g.offsets()[u];
+    }
+
+    /**
+     * Marks a node as reached
+     * @return true if the node was not reached yet, false if it was, possibly by another thread
+     */
+    private static boolean claim(AtomicLongArray reached, int v) {
+        int w = v >>> 6;
+        long bit = 1L << v;
+        while (true) {
+            long word = reached.get(w);
+            if ((word & bit) != 0) return false;
+            if (reached.compareAndSet(w, word, word | bit)) return true;
+        }
+    }
+
+    /**
+     * Explores a level from the frontier to its successors, the next frontier being written in order of the tasks
+     * @return the number of nodes reached, the sum of their out-degrees and the sum of their in-degrees
+     */
+    private long[] topDown(FrozenGraf g, int[] frontier, int nf, int[] next, AtomicLongArray reached,
+                           int distance, boolean parallel) {
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] inOffsets = g.getReverse().offsets();
+        int tasks = parallel ? Math.max(1, nf / CHUNK) : 1;
+        int[][] found = new int[tasks][];
+        long[][] counts = new long[tasks][3];
+        IntStream range = IntStream.range(0, tasks);
+        if (tasks > 1) range = range.parallel();
+        range.forEach(t -> {
+            int[] buffer = new int[16];
+            int size = 0;
+            long out = 0;
+            long in = 0;
+            for (int i = (int) ((long) nf * t / tasks); i < (int) ((long) nf * (t + 1) / tasks); i++) {
+                int u = frontier[i];
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int v = targets[k];
+                    //the distance read without synchronisation only avoids most of the compare-and-set
+                    if (distances[v] >= 0 || !claim(reached, v)) continue;
+                    distances[v] = distance;
+                    parents[v] = u;
+                    if (size == buffer.length) buffer = Arrays.copyOf(buffer, size << 1);
+                    buffer[size++] = v;
+                    out += offsets[v + 1] - offsets[v];
+                    in += inOffsets[v + 1] - inOffsets[v];
+                }
+            }
+            found[t] = Arrays.copyOf(buffer, size);
+            counts[t][1] = out;
+            counts[t][2] = in;
+        });
+        long[] total = new long[3];
+        for (int t = 0; t < tasks; t++) {
+            System.arraycopy(found[t], 0, next, (int) total[0], found[t].length);
+            total[0] += found[t].length;
+            total[1] += counts[t][1];
+            total[2] += counts[t][2];
+        }
+        return total;
+    }
+
+    /**
+     * Explores a level from the nodes not reached yet, each one looking for a predecessor in the frontier
+     * @return the number of nodes reached, the sum of their out-degrees and the sum of their in-degrees
+     */
+    private long[] bottomUp(FrozenGraf reverse, FrozenGraf g, long[] frontierBits, long[] nextBits,
+                            AtomicLongArray reached, int distance, boolean parallel) {
+        int n = ids.length;
+        int[] offsets = reverse.offsets();
+        int[] sources = reverse.targets();
+        int[] outOffsets = g.offsets();
+        int words = nextBits.length;
+        int wordsPerTask = CHUNK >>> 6;
+        int tasks = parallel ? (words + wordsPerTask - 1) / wordsPerTask : 1;
+        long[][] counts = new long[tasks][3];
+        IntStream range = IntStream.range(0, tasks);
+        if (tasks > 1) range = range.parallel();
+        range.forEach(t -> {
+            int from = parallel ? t * wordsPerTask : 0;
+            int to = parallel ? Math.min(words, from + wordsPerTask) : words;
+            long[] count = counts[t];
+            for (int w = from; w < to; w++) {
+                long word = 0;
+                long unreached = ~reached.get(w);
+                for (; unreached != 0; unreached &= unreached -1) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(unreached);
+                    if (v >= n) break;
+                    for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                        int u = sources[k];
+                        if ((frontierBits[u >>> 6] & (1L << u)) != 0) {
+                            distances[v] = distance;
+                            parents[v] = u;
+                            word |= 1L << v;
+                            count[0]++;
+                            count[1] += outOffsets[v + 1] - outOffsets[v];
+                            count[2] += offsets[v + 1] - offsets[v];
+                            break;
+                        }
+                    }
+                }
+                nextBits[w] = word;
+                //the word is only written by this task
+                if (word != 0) reached.set(w, reached.get(w) | word);
+            }
+        });
+        long[] total = new long[3];
+        for (long[] count : counts) {
+            total[0] += count[0];
+            total[1] += count[1];
+            total[2] += count[2];
+        }
+        return total;
+    }
+
+    /**
+     * Gets the distances of the nodes, the array itself and not a copy
+     * @return the number of edges from the closest source to the node of each compact index, -1 if it is not reached
+     */
+    public int[] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Gets the parents of the nodes in the tree of the search, the array itself and not a copy
+     * @return the compact index of the node the node of each compact index was reached from,
+     * -1 for the sources and the nodes not reached
+     */
+    public int[] getParents() {
+        return parents;
+    }
+
+    /**
+     * Gets the compact index of a node, the index of its cell in the distances and parents
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the graph does not contain it
+     */
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Gets the id of the node stored at a compact index
+     * @param index an index between 0 and the number of nodes -1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the distance of a node from the closest source
+     * @param id int id representing a node
+     * @return the number of edges of a shortest path from a source, -1 if the node is not reached or does not exist
+     */
+    public int getDistance(int id) {
+        int index = indexOf(id);
+        return index < 0 ? -1 : distances[index];
+    }
+
+    /**
+     * Gets a shortest path from a source to a node, following the parents
+     * @param id int id representing a node
+     * @return the nodes of the path, from the source to the node, or null if the node is not reached or does not exist
+     */
+    public List<Node> getPath(int id) {
+        int index = indexOf(id);
+        if (index < 0 || distances[index] < 0) return null;
+        List<Node> path = new ArrayList<>(distances[index] + 1);
+        for (int u = index; u >= 0; u = parents[u]) path.add(new Node(ids[u]));
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Gets the number of nodes reached, sources included
+     */
+    public int nbReached() {
+        return nbReached;
+    }
+
+    /**
+     * Gets the greatest distance of a node reached, 0 if only the sources are reached
+     */
+    public int depth() {
+        return depth;
+    }
+}
@@ -0,0 +1,634 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Directed graph which can be modified and read from many threads at once.
+ * Nodes are spread over stripes by a hash of their id, each stripe holding the rows of its nodes behind its own lock :
+ * adding or removing an edge only locks the stripes of its two nodes, so writers on different nodes do not wait for
+ * each other. Successors, predecessors and degrees are read optimistically, without taking any lock unless a writer
+ * modified the same stripe during the read.
+ * There is at most one edge from a node to another, adding an existing edge does nothing.
+ * Use {@link #toGraf()} or {@link #freeze()} to run the algorithms of Graf on the current content.
+ */
+public class ConcurrentGraf {
+    private static final int UNUSED = Integer.MIN_VALUE;
+
+    private final Stripe[] stripes;
+    private final AtomicInteger nbNodes = new AtomicInteger();
+    private final AtomicInteger nbEdges = new AtomicInteger();
+    private final AtomicInteger biggestId = new AtomicInteger();
+
+    /**
+     * Builds an empty graph with a number of stripes suited to the number of processors
+     */
+    public ConcurrentGraf() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Builds an empty graph
+     * @param concurrency number of writers expected at once, the number of stripes is the next power of two
+     */
+    public ConcurrentGraf(int concurrency) {
+        int n = 1;
+        while (n < concurrency) n <<= 1;
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) stripes[i] = new Stripe(i);
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Packs a local index and an id into the key of the position maps of a stripe
+     */
+    private static long key(int u, int id) {
+        return ((long) u << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the stripe of a node from the high bits of the hash of its id, the maps of the stripes use the low bits
+     */
+    private Stripe stripeOf(int id) {
+        return stripes[(int) (((hash(id) & 0xFFFFFFFFL) * stripes.length) >>> 32)];
+    }
+
+    /**
+     * Adds a node to the graph, does nothing if the node already exists
+     * @param id int id representing the node
+     */
+    public void addNode(int id) {
+        Stripe s = stripeOf(id);
+        long stamp = s.lock.writeLock();
+        try {
+            s.indexOrAdd(id);
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a node to the graph
+     * @param n node to be added
+     */
+    public void addNode(Node n) {
+        addNode(n.getId());
+    }
+
+    /**
+     * Adds a node with a new id to the graph, bigger than every id the graph has contained
+     * @return the node added
+     */
+    public Node addNode() {
+        int id = biggestId.incrementAndGet();
+        addNode(id);
+        return new Node(id);
+    }
+
+    /**
+     * Removes a node and all its edges from the graph, locks every stripe while doing so
+     * @param id int id representing the node to be removed
+     */
+    public void removeNode(int id) {
+        long[] stamps = lockAll();
+        try {
+            Stripe s = stripeOf(id);
+            int u = s.indexOf(id);
+            if (u < 0) return;
+            for (int v : Arrays.copyOf(s.outTargets[u], s.outDeg[u])) deleteEdge(id, v);
+            for (int w : Arrays.copyOf(s.inSources[u], s.inDeg[u])) deleteEdge(w, id);
+            s.remove(u);
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    /**
+     * Removes a node and all its edges from the graph, locks every stripe while doing so
+     * @param n node to be removed
+     */
+    public void removeNode(Node n) {
+        removeNode(n.getId());
+    }
+
+    /**
+     * Adds an edge from one node to another, adds the nodes to the graph if needed
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     */
+    public void addEdge(int from_id, int to_id) {
+        addEdge(from_id, to_id, 0);
+    }
+
+    /**
+     * Adds an edge from one node to another, adds the nodes to the graph if needed
+     * @param from a node
+     * @param to another node
+     */
+    public void addEdge(Node from, Node to) {
+        addEdge(from.getId(), to.getId(), 0);
+    }
+
+    /**
+     * Adds a weighted edge from one node to another, adds the nodes to the graph if needed,
+     * does nothing if the edge already exists
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @param weight weight of the edge
+     */
+    public void addEdge(int from_id, int to_id, int weight) {
+        Stripe a = stripeOf(from_id);
+        Stripe b = stripeOf(to_id);
+        //the stripes are locked in the order of their index so that two writers cannot wait for each other,
+        //and unlocked in the reverse order
+        Stripe first = a.index <= b.index ? a : b;
+        Stripe second = first == a ? b : a;
+        long firstStamp = first.lock.writeLock();
+        long secondStamp = second != first ? second.lock.writeLock() : 0;
+        try {
+            int u = a.indexOrAdd(from_id);
+            int v = b.indexOrAdd(to_id);
+            if (a.outSlot.get(key(u, to_id)) != LongIntMap.MISSING) return;
+            a.appendOut(u, to_id, weight);
+            b.appendIn(v, from_id);
+            nbEdges.incrementAndGet();
+        } finally {
+            if (second != first) second.lock.unlockWrite(secondStamp);
+            first.lock.unlockWrite(firstStamp);
+        }
+    }
+
+    /**
+     * Removes the edge from a node to another, does not remove the nodes
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     */
+    public void removeEdge(int from_id, int to_id) {
+        Stripe a = stripeOf(from_id);
+        Stripe b = stripeOf(to_id);
+        //locked and unlocked in the same orders as in addEdge
+        Stripe first = a.index <= b.index ? a : b;
+        Stripe second = first == a ? b : a;
+        long firstStamp = first.lock.writeLock();
+        long secondStamp = second != first ? second.lock.writeLock() : 0;
+        try {
+            deleteEdge(from_id, to_id);
+        } finally {
+            if (second != first) second.lock.unlockWrite(secondStamp);
+            first.lock.unlockWrite(firstStamp);
+        }
+    }
+
+    /**
+     * Removes the edge from a node to another, does not remove the nodes
+     * @param from a node
+     * @param to another node
+     */
+    public void removeEdge(Node from, Node to) {
+        removeEdge(from.getId(), to.getId());
+    }
+
+    /**
+     * Deletes an edge, the stripes of both its nodes must be write locked
+     */
+    private void deleteEdge(int from_id, int to_id) {
+        Stripe a = stripeOf(from_id);
+        Stripe b = stripeOf(to_id);
+        int u = a.indexOf(from_id);
+        int v = b.indexOf(to_id);
+        if (u < 0 || v < 0) return;
+        int slot = a.outSlot.get(key(u, to_id));
+        if (slot == LongIntMap.MISSING) return;
+        a.removeOut(u, slot);
+        b.removeIn(v, b.inSlot.get(key(v, from_id)));
+        nbEdges.decrementAndGet();
+    }
+
+    private long[] lockAll() {
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) stamps[i] = stripes[i].lock.writeLock();
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int i = stripes.length - 1; i >= 0; i--) stripes[i].lock.unlockWrite(stamps[i]);
+    }
+
+    /**
+     * Tests if the graph contains a node
+     * @param id int id representing the node
+     * @return true if the graph contains the node, false if not
+     */
+    public boolean existsNode(int id) {
+        Stripe s = stripeOf(id);
+        long stamp = s.lock.tryOptimisticRead();
+        boolean exists = s.indexOf(id) >= 0;
+        if (s.lock.validate(stamp)) return exists;
+        stamp = s.lock.readLock();
+        try {
+            return s.indexOf(id) >= 0;
+        } finally {
+            s.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Tests if the graph contains an edge from one node to another
+     * @param u_id int id representing a node
+     * @param v_id int id representing another node
+     * @return true if there is an edge between the two nodes, false if not
+     */
+    public boolean existsEdge(int u_id, int v_id) {
+        return adjacent(u_id, v_id);
+    }
+
+    /**
+     * Tests if the graph contains an edge from one node to another, in this direction
+     * @return true if there is an edge from the first node to the second, false if not
+     */
+    private boolean containsEdge(int from_id, int to_id) {
+        Stripe s = stripeOf(from_id);
+        long stamp = s.lock.readLock();
+        try {
+            int u = s.indexOf(from_id);
+            return u >= 0 && s.outSlot.get(key(u, to_id)) != LongIntMap.MISSING;
+        } finally {
+            s.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Tests the adjacency of two nodes, as in if the graph contains an edge from one to the other
+     * @param u_id an int id representing a node
+     * @param v_id an int id representing another node
+     * @return true if the nodes are adjacent, false if not
+     */
+    public boolean adjacent(int u_id, int v_id) {
+        return containsEdge(u_id, v_id) || containsEdge(v_id, u_id);
+    }
+
+    /**
+     * Gets the weight of the edge from a node to another
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the weight of the edge, or 0 if there is no such edge
+     */
+    public int getWeight(int from_id, int to_id) {
+        Stripe s = stripeOf(from_id);
+        long stamp = s.lock.readLock();
+        try {
+            int u = s.indexOf(from_id);
+            if (u < 0) return 0;
+            int slot = s.outSlot.get(key(u, to_id));
+            return slot == LongIntMap.MISSING ? 0 : s.outWeights[u][slot];
+        } finally {
+            s.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the ids of the successors of a node, read without locking
+     * @param id int id representing a node
+     * @return the ids of the successors, in no particular order, empty if the node does not exist
+     */
+    public int[] getSuccessorIds(int id) {
+        return readRow(id, true);
+    }
+
+    /**
+     * Gets the ids of the predecessors of a node, read without locking
+     * @param id int id representing a node
+     * @return the ids of the predecessors, in no particular order, empty if the node does not exist
+     */
+    public int[] getPredecessorIds(int id) {
+        return readRow(id, false);
+    }
+
+    /**
+     * Gets a list of the successors of a node, read without locking
+     * @param id int id representing a node
+     * @return a list of the successors of the node
+     */
+    public List<Node> getSuccessors(int id) {
+        int[] ids = getSuccessorIds(id);
+        List<Node> successors = new ArrayList<>(ids.length);
+        for (int s : ids) successors.add(new Node(s));
+        return successors;
+    }
+
+    /**
+     * Gets a list of the successors of a node, read without locking
+     * @param n a node
+     * @return a list of the successors of the node
+     */
+    public List<Node> getSuccessors(Node n) {
+        return getSuccessors(n.getId());
+    }
+
+    private int[] readRow(int id, boolean out) {
+        Stripe s = stripeOf(id);
+        long stamp = s.lock.tryOptimisticRead();
+        int[] row = s.readRow(id, out);
+        if (s.lock.validate(stamp)) return row;
+        stamp = s.lock.readLock();
+        try {
+            return s.readRow(id, out);
+        } finally {
+            s.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the number of edges leaving a node, read without locking
+     * @param id int id representing a node
+     * @return the out-degree of the node, 0 if it does not exist
+     */
+    public int outDegree(int id) {
+        return readDegree(id, true);
+    }
+
+    /**
+     * Gets the number of edges coming to a node, read without locking
+     * @param id int id representing a node
+     * @return the in-degree of the node, 0 if it does not exist
+     */
+    public int inDegree(int id) {
+        return readDegree(id, false);
+    }
+
+    /**
+     * Gets the number of edges both leaving and coming to a node, read without locking
+     * @param id int id representing a node
+     * @return the degree of the node, 0 if it does not exist
+     */
+    public int degree(int id) {
+        return outDegree(id) + inDegree(id);
+    }
+
+    private int readDegree(int id, boolean out) {
+        Stripe s = stripeOf(id);
+        long stamp = s.lock.tryOptimisticRead();
+        int degree = s.readDegree(id, out);
+        if (s.lock.validate(stamp)) return degree;
+        stamp = s.lock.readLock();
+        try {
+            return s.readDegree(id, out);
+        } finally {
+            s.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the number of nodes in the graph
+     * @return the number of nodes in the graph
+     */
+    public int nbNodes() {
+        return nbNodes.get();
+    }
+
+    /**
+     * Gets the total number of edges in the graph
+     * @return the total number of edges in the graph
+     */
+    public int nbEdges() {
+        return nbEdges.get();
+    }
+
+    /**
+     * Copies the nodes and edges of the graph into a builder, every stripe is read locked so the copy is consistent
+     */
+    private GrafBuilder copy() {
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) stamps[i] = stripes[i].lock.readLock();
+        try {
+            GrafBuilder builder = new GrafBuilder(nbEdges.get());
+            for (Stripe s : stripes) {
+                for (int u = 0; u < s.bound; u++) {
+                    if (s.ids[u] == UNUSED) continue;
+                    builder.addNode(s.ids[u]);
+                    for (int k = 0; k < s.outDeg[u]; k++) builder.addEdge(s.ids[u], s.outTargets[u][k], s.outWeights[u][k]);
+                }
+            }
+            return builder;
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) stripes[i].lock.unlockRead(stamps[i]);
+        }
+    }
+
+    /**
+     * Builds a Graf holding the current nodes and edges of the graph
+     * @return a new Graf, later modifications of this graph do not modify it
+     */
+    public Graf toGraf() {
+        return copy().build();
+    }
+
+    /**
+     * Builds an immutable compressed sparse row snapshot of the graph
+     * @return a FrozenGraf holding the current nodes and edges of the graph
+     */
+    public FrozenGraf freeze() {
+        return copy().buildFrozen();
+    }
+
+    /**
+     * The nodes whose id hashes to one stripe, with their rows.
+     * The rows hold ids rather than indexes, as the other node of an edge may belong to another stripe.
+     * The map from id to local index is read by optimistic readers : its lookups must end and stay in bounds
+     * whatever a concurrent writer does, the result being discarded by the caller if the stripe was modified.
+     */
+    private final class Stripe {
+        final int index;
+        final StampedLock lock = new StampedLock();
+        //id -> local index + 1, 0 for an empty slot, open addressing with linear probing
+        int[] mapKeys = new int[16];
+        int[] mapValues = new int[16];
+        int mapSize;
+        //local index -> id (UNUSED for a free index) and rows
+        int[] ids = new int[4];
+        int bound;
+        int[] freeIndexes = new int[4];
+        int nbFreeIndexes;
+        int[] outDeg = new int[4];
+        int[][] outTargets = new int[4][];
+        int[][] outWeights = new int[4][];
+        int[] inDeg = new int[4];
+        int[][] inSources = new int[4][];
+        //(local index, other id) -> position in the row, only read by writers and locked readers
+        final LongIntMap outSlot = new LongIntMap();
+        final LongIntMap inSlot = new LongIntMap();
+
+        Stripe(int index) {
+            this.index = index;
+        }
+
+        int indexOf(int id) {
+            int[] keys = mapKeys;
+            int[] values = mapValues;
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            for (int probe = 0; probe < keys.length && i < values.length; probe++) {
+                int value = values[i];
+                if (value == 0) return -1;
+                if (keys[i] == id) return value - 1;
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        int indexOrAdd(int id) {
+            int u = indexOf(id);
+            if (u >= 0) return u;
+            if (nbFreeIndexes > 0) {
+                u = freeIndexes[--nbFreeIndexes];
+            } else {
+                if (bound == ids.length) {
+                    int capacity = bound << 1;
+                    ids = Arrays.copyOf(ids, capacity);
+                    outDeg = Arrays.copyOf(outDeg, capacity);
+                    outTargets = Arrays.copyOf(outTargets, capacity);
+                    outWeights = Arrays.copyOf(outWeights, capacity);
+                    inDeg = Arrays.copyOf(inDeg, capacity);
+                    inSources = Arrays.copyOf(inSources, capacity);
+                }
+                u = bound++;
+            }
+            ids[u] = id;
+            outDeg[u] = 0;
+            outTargets[u] = new int[2];
+            outWeights[u] = new int[2];
+            inDeg[u] = 0;
+            inSources[u] = new int[2];
+            mapPut(id, u + 1);
+            nbNodes.incrementAndGet();
+            biggestId.accumulateAndGet(id, Math::max);
+            return u;
+        }
+
+        void remove(int u) {
+            mapRemove(ids[u]);
+            ids[u] = UNUSED;
+            outDeg[u] = 0;
+            inDeg[u] = 0;
+            if (nbFreeIndexes == freeIndexes.length) freeIndexes = Arrays.copyOf(freeIndexes, nbFreeIndexes << 1);
+            freeIndexes[nbFreeIndexes++] = u;
+            nbNodes.decrementAndGet();
+        }
+
+        void appendOut(int u, int target, int weight) {
+            int slot = outDeg[u];
+            if (slot == outTargets[u].length) {
+                //the bigger row is a full copy of the old one, an optimistic reader sees either of them
+                outTargets[u] = Arrays.copyOf(outTargets[u], slot << 1);
+                outWeights[u] = Arrays.copyOf(outWeights[u], slot << 1);
+            }
+            outTargets[u][slot] = target;
+            outWeights[u][slot] = weight;
+            outDeg[u] = slot + 1;
+            outSlot.put(key(u, target), slot);
+        }
+
+        void appendIn(int v, int source) {
+            int slot = inDeg[v];
+            if (slot == inSources[v].length) inSources[v] = Arrays.copyOf(inSources[v], slot << 1);
+            inSources[v][slot] = source;
+            inDeg[v] = slot + 1;
+            inSlot.put(key(v, source), slot);
+        }
+
+        void removeOut(int u, int slot) {
+            int last = --outDeg[u];
+            outSlot.remove(key(u, outTargets[u][slot]));
+            if (slot != last) {
+                outTargets[u][slot] = outTargets[u][last];
+                outWeights[u][slot] = outWeights[u][last];
+                outSlot.put(key(u, outTargets[u][slot]), slot);
+            }
+        }
+
+        void removeIn(int v, int slot) {
+            int last = --inDeg[v];
+            inSlot.remove(key(v, inSources[v][slot]));
+            if (slot != last) {
+                inSources[v][slot] = inSources[v][last];
+                inSlot.put(key(v, inSources[v][slot]), slot);
+            }
+        }
+
+        /**
+         * Copies a row, may be called without the lock : every read is checked to stay in bounds
+         */
+        int[] readRow(int id, boolean out) {
+            int u = indexOf(id);
+            int[] degrees = out ? outDeg : inDeg;
+            int[][] rows = out ? outTargets : inSources;
+            if (u < 0 || u >= degrees.length || u >= rows.length) return new int[0];
+            int[] row = rows[u];
+            int degree = degrees[u];
+            if (row == null || degree < 0 || degree > row.length) return new int[0];
+            return Arrays.copyOf(row, degree);
+        }
+
+        /**
+         * Reads the size of a row, may be called without the lock
+         */
+        int readDegree(int id, boolean out) {
+            int u = indexOf(id);
+            int[] degrees = out ? outDeg : inDeg;
+            if (u < 0 || u >= degrees.length) return 0;
+            return degrees[u];
+        }
+
+        private void mapPut(int id, int value) {
+            if ((mapSize + 1) * 4 > mapKeys.length * 3) {
+                //a new table is filled then published, readers keep probing the old one meanwhile
+                int[] oldKeys = mapKeys;
+                int[] oldValues = mapValues;
+                int[] keys = new int[oldKeys.length << 1];
+                int[] values = new int[oldKeys.length << 1];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldValues[i] != 0) insert(keys, values, oldKeys[i], oldValues[i]);
+                }
+                mapKeys = keys;
+                mapValues = values;
+            }
+            insert(mapKeys, mapValues, id, value);
+            mapSize++;
+        }
+
+        private void insert(int[] keys, int[] values, int id, int value) {
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (values[i] != 0) i = (i + 1) & mask;
+            keys[i] = id;
+            values[i] = value;
+        }
+
+        private void mapRemove(int id) {
+            int mask = mapKeys.length - 1;
+            int i = hash(id) & mask;
+            while (mapKeys[i] != id) i = (i + 1) & mask;
+            //backward shift deletion, so that probing never needs tombstones
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (mapValues[j] == 0) break;
+                int home = hash(mapKeys[j]) & mask;
+                if ((j > i && (home <= i || home > j)) || (j < i && home <= i && home > j)) {
+                    mapKeys[i] = mapKeys[j];
+                    mapValues[i] = mapValues[j];
+                    i = j;
+                }
+            }
+            mapValues[i] = 0;
+            mapSize--;
+        }
+    }
+}
@@ -0,0 +1,605 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Directed graph made of an immutable compressed sparse row base and a small mutable delta of the edits made since,
+ * in the manner of a log-structured merge tree : queries merge the base and the delta, and a background compaction
+ * folds the delta into a new base once it grows past a threshold. Reads stay close to the speed of FrozenGraf while
+ * adding and removing edges only touches the delta.
+ * While a compaction runs, its delta is frozen and new edits go to a fresh delta on top of it.
+ * There is at most one edge from a node to another, adding an existing edge does nothing.
+ * All the methods can be called from several threads.
+ */
+public class DeltaGraf {
+    private static final int[] EMPTY = new int[0];
+    //one daemon thread compacts the deltas of all the graphs, one compaction at a time
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "DeltaGraf compaction");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FrozenGraf base;
+    //the delta being folded into a new base, or null, and the delta receiving the edits, on top of it
+    private Delta compacting;
+    private Delta active;
+    private int nbNodes;
+    private int nbEdges;
+
+    private volatile int compactionThreshold;
+    //guarded by the write lock
+    private boolean compactionScheduled;
+    private volatile int compactionCount;
+    private volatile long lastCompactionNanos;
+    private volatile long totalCompactionNanos;
+
+    /**
+     * Edits made over the layers below it : the layer below is the delta being compacted or the base
+     */
+    private static final class Delta {
+        //edges added, with their weights, and nodes added
+        final Graf added = new Graf();
+        //edges of the layers below which are removed
+        final Graf removed = new Graf();
+        //nodes removed, along with their edges in the layers below
+        final IntIntMap hidden = new IntIntMap();
+        Delta below;
+
+        Delta(Delta below) {
+            this.below = below;
+        }
+
+        int size() {
+            return added.nbEdges() + removed.nbEdges() + hidden.size();
+        }
+    }
+
+    /**
+     * Builds an empty graph, compacted every 65536 edits
+     */
+    public DeltaGraf() {
+        this(new FrozenGraf(EMPTY, new int[1], EMPTY, null, 0, true), 1 << 16);
+    }
+
+    /**
+     * Builds a graph on top of a base
+     * @param base the base, a directed graph with at most one edge from a node to another
+     * @param compactionThreshold number of edits in the delta which starts a background compaction
+     */
+    public DeltaGraf(FrozenGraf base, int compactionThreshold) {
+        if (!base.isDirected()) throw new IllegalArgumentException("The base must be directed");
+        this.base = base;
+        this.active = new Delta(null);
+        this.nbNodes = base.nbNodes();
+        this.nbEdges = base.nbEdges();
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    //Queries on a layer : a delta and the layers below it, the base if the delta is null
+
+    private boolean nodeAt(Delta d, int id) {
+        for (; d != null; d = d.below) {
+            if (d.added.existsNode(id)) return true;
+            if (d.hidden.get(id) != IntIntMap.MISSING) return false;
+        }
+        return base.existsNode(id);
+    }
+
+    private boolean edgeAt(Delta d, int from_id, int to_id) {
+        for (; d != null; d = d.below) {
+            if (d.added.getEdgeId(from_id, to_id) != Graf.FREE) return true;
+            if (hides(d, from_id, to_id)) return false;
+        }
+        return base.find(from_id, to_id) >= 0;
+    }
+
+    private int weightAt(Delta d, int from_id, int to_id) {
+        for (; d != null; d = d.below) {
+            int e = d.added.getEdgeId(from_id, to_id);
+            if (e != Graf.FREE) return d.added.getEdgeWeight(e);
+            if (hides(d, from_id, to_id)) return 0;
+        }
+        int k = base.find(from_id, to_id);
+        return k < 0 || base.weights() == null ? 0 : base.weights()[k];
+    }
+
+    /**
+     * Tells if a delta hides the edge from one node to another of the layers below it
+     */
+    private static boolean hides(Delta d, int from_id, int to_id) {
+        return d.removed.getEdgeId(from_id, to_id) != Graf.FREE
+                || d.hidden.get(from_id) != IntIntMap.MISSING || d.hidden.get(to_id) != IntIntMap.MISSING;
+    }
+
+    /**
+     * Gets the successors or the predecessors of a node in a layer, the node must exist in the layer
+     */
+    private int[] neighboursAt(Delta d, int id, boolean out) {
+        if (d == null) {
+            int[] neighbours = (out ? base : base.getReverse()).getSuccessorIds(id);
+            return neighbours == null ? EMPTY : neighbours;
+        }
+        int[] below = d.hidden.get(id) != IntIntMap.MISSING || !nodeAt(d.below, id) ? EMPTY : neighboursAt(d.below, id, out);
+        int[] added = !d.added.existsNode(id) ? EMPTY : out ? d.added.getSuccessorIds(id) : d.added.getPredecessorIds(id);
+        int[] neighbours = Arrays.copyOf(below, below.length + added.length);
+        int n = 0;
+        for (int other : below) {
+            boolean removed = out ? d.removed.getEdgeId(id, other) != Graf.FREE : d.removed.getEdgeId(other, id) != Graf.FREE;
+            if (!removed && d.hidden.get(other) == IntIntMap.MISSING) neighbours[n++] = other;
+        }
+        System.arraycopy(added, 0, neighbours, n, added.length);
+        return Arrays.copyOf(neighbours, n + added.length);
+    }
+
+    /**
+     * Gets the ids of all the nodes of a layer, sorted
+     */
+    private int[] nodeIdsAt(Delta d) {
+        int[] baseIds = base.ids();
+        int[] ids = new int[baseIds.length];
+        int n = 0;
+        for (int id : baseIds) {
+            if (nodeAt(d, id)) ids[n++] = id;
+        }
+        for (Delta layer = d; layer != null; layer = layer.below) {
+            for (int u : layer.added.sortedIndexes()) {
+                int id = layer.added.registry.idAt(u);
+                if (!base.existsNode(id) && nodeAt(d, id)) {
+                    if (n == ids.length) ids = Arrays.copyOf(ids, Math.max(16, n << 1));
+                    ids[n++] = id;
+                }
+            }
+        }
+        Arrays.sort(ids, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || ids[i] != ids[unique -1]) ids[unique++] = ids[i];
+        }
+        return Arrays.copyOf(ids, unique);
+    }
+
+    /**
+     * Builds the compressed sparse row snapshot of a layer
+     */
+    private FrozenGraf mergeAt(Delta d) {
+        int[] ids = nodeIdsAt(d);
+        int n = ids.length;
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[16];
+        int[] weights = new int[16];
+        boolean weighted = false;
+        for (int i = 0; i < n; i++) {
+            int[] successors = neighboursAt(d, ids[i], true);
+            long[] row = new long[successors.length];
+            for (int k = 0; k < successors.length; k++) {
+                int weight = weightAt(d, ids[i], successors[k]);
+                weighted |= weight != 0;
+                row[k] = ((long) Arrays.binarySearch(ids, successors[k]) << 32) | (weight & 0xFFFFFFFFL);
+            }
+            Arrays.sort(row);
+            offsets[i + 1] = offsets[i] + row.length;
+            if (offsets[i + 1] > targets.length) {
+                targets = Arrays.copyOf(targets, Math.max(offsets[i + 1], targets.length << 1));
+                weights = Arrays.copyOf(weights, targets.length);
+            }
+            for (int k = 0; k < row.length; k++) {
+                targets[offsets[i] + k] = (int) (row[k] >>> 32);
+                weights[offsets[i] + k] = (int) row[k];
+            }
+        }
+        int m = offsets[n];
+        return new FrozenGraf(ids, offsets, Arrays.copyOf(targets, m), weighted ? Arrays.copyOf(weights, m) : null, m, true);
+    }
+
+    //Edits, always made on the active delta
+
+    /**
+     * Adds a node to the graph, does nothing if the node already exists
+     * @param id int id representing the node
+     */
+    public void addNode(int id) {
+        lock.writeLock().lock();
+        try {
+            addNodeLocked(id);
+            afterEdit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addNodeLocked(int id) {
+        if (!nodeAt(active, id)) {
+            active.added.addNode(id);
+            nbNodes++;
+        }
+    }
+
+    /**
+     * Removes a node and all its edges from the graph
+     * @param id int id representing the node to be removed
+     */
+    public void removeNode(int id) {
+        lock.writeLock().lock();
+        try {
+            if (!nodeAt(active, id)) return;
+            int selfLoop = edgeAt(active, id, id) ? 1 : 0;
+            nbEdges -= neighboursAt(active, id, true).length + neighboursAt(active, id, false).length - selfLoop;
+            nbNodes--;
+            if (active.added.existsNode(id)) active.added.removeNode(id);
+            if (active.removed.existsNode(id)) active.removed.removeNode(id);
+            if (nodeAt(active.below, id)) active.hidden.put(id, 1);
+            afterEdit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an edge from one node to another, adds the nodes to the graph if needed
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     */
+    public void addEdge(int from_id, int to_id) {
+        addEdge(from_id, to_id, 0);
+    }
+
+    /**
+     * Adds a weighted edge from one node to another, adds the nodes to the graph if needed,
+     * does nothing if the edge already exists
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @param weight weight of the edge
+     */
+    public void addEdge(int from_id, int to_id, int weight) {
+        lock.writeLock().lock();
+        try {
+            addNodeLocked(from_id);
+            addNodeLocked(to_id);
+            if (edgeAt(active, from_id, to_id)) return;
+            //an edge removed in this delta stays in its removed edges, the added one is found first
+            active.added.addEdge(from_id, to_id, weight);
+            nbEdges++;
+            afterEdit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the edge from a node to another, does not remove the nodes
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     */
+    public void removeEdge(int from_id, int to_id) {
+        lock.writeLock().lock();
+        try {
+            if (!edgeAt(active, from_id, to_id)) return;
+            active.added.removeEdge(from_id, to_id);
+            if (!hides(active, from_id, to_id) && edgeAt(active.below, from_id, to_id)) {
+                active.removed.addEdge(from_id, to_id);
+            }
+            nbEdges--;
+            afterEdit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a background compaction if the delta has grown past the threshold, called holding the write lock so that
+     * a single compaction is scheduled however many writers cross the threshold at once
+     */
+    private void afterEdit() {
+        if (!compactionScheduled && active.size() >= compactionThreshold) {
+            compactionScheduled = true;
+            COMPACTOR.execute(this::compact);
+        }
+    }
+
+    /**
+     * Folds the current delta into a new base, in the calling thread. Edits can go on meanwhile, in a new delta
+     * @return true if a compaction was made, false if the delta was empty or another compaction was running
+     */
+    public boolean compact() {
+        Delta d;
+        lock.writeLock().lock();
+        try {
+            compactionScheduled = false;
+            if (compacting != null || active.size() == 0) return false;
+            d = active;
+            compacting = d;
+            active = new Delta(d);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        //the base and the compacting delta are not modified anymore, they are read without the lock
+        long start = System.nanoTime();
+        FrozenGraf merged = mergeAt(d);
+        long duration = System.nanoTime() - start;
+
+        lock.writeLock().lock();
+        try {
+            base = merged;
+            active.below = null;
+            compacting = null;
+            afterEdit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastCompactionNanos = duration;
+        totalCompactionNanos += duration;
+        compactionCount++;
+        return true;
+    }
+
+    //Queries, merging the base and the deltas
+
+    /**
+     * Tests if the graph contains a node
+     * @param id int id representing the node
+     * @return true if the graph contains the node, false if not
+     */
+    public boolean existsNode(int id) {
+        lock.readLock().lock();
+        try {
+            return nodeAt(active, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tests the adjacency of two nodes, as in if the graph contains an edge from one to the other
+     * @param u_id an int id representing a node
+     * @param v_id an int id representing another node
+     * @return true if the nodes are adjacent, false if not
+     */
+    public boolean adjacent(int u_id, int v_id) {
+        lock.readLock().lock();
+        try {
+            return edgeAt(active, u_id, v_id) || edgeAt(active, v_id, u_id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tests if the graph contains an edge from one node to another
+     * @param u_id int id representing a node
+     * @param v_id int id representing another node
+     * @return true if there is an edge between the two nodes, false if not
+     */
+    public boolean existsEdge(int u_id, int v_id) {
+        return adjacent(u_id, v_id);
+    }
+
+    /**
+     * Tests if the graph contains an edge
+     * @param e an edge between two nodes
+     * @return true if the graph contains the edge, false if not
+     */
+    public boolean existsEdge(Edge e) {
+        lock.readLock().lock();
+        try {
+            return edgeAt(active, e.getFrom().getId(), e.getTo().getId());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the weight of the edge from one node to another
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the weight of the edge, or 0 if the edge has no weight or does not exist
+     */
+    public int getWeight(int from_id, int to_id) {
+        lock.readLock().lock();
+        try {
+            return weightAt(active, from_id, to_id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the ids of the successors of a node
+     * @param id int id representing a node
+     * @return the ids of the successors, in no particular order, or null if the graph does not contain the node
+     */
+    public int[] getSuccessorIds(int id) {
+        return neighbours(id, true);
+    }
+
+    /**
+     * Gets the ids of the predecessors of a node
+     * @param id int id representing a node
+     * @return the ids of the predecessors, in no particular order, or null if the graph does not contain the node
+     */
+    public int[] getPredecessorIds(int id) {
+        return neighbours(id, false);
+    }
+
+    private int[] neighbours(int id, boolean out) {
+        lock.readLock().lock();
+        try {
+            return nodeAt(active, id) ? neighboursAt(active, id, out) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the list of all the successors of a node
+     * @param id int representing the node whose successors we want
+     * @return the list of successors, or null if the graph does not contain the node
+     */
+    public List<Node> getSuccessors(int id) {
+        int[] ids = getSuccessorIds(id);
+        if (ids == null) return null;
+        List<Node> successors = new ArrayList<>(ids.length);
+        for (int s : ids) successors.add(new Node(s));
+        return successors;
+    }
+
+    /**
+     * Gets the number of edges leaving a node
+     * @param id int id representing a node
+     * @return the out-degree of the node, 0 if the graph does not contain it
+     */
+    public int outDegree(int id) {
+        int[] successors = getSuccessorIds(id);
+        return successors == null ? 0 : successors.length;
+    }
+
+    /**
+     * Gets the number of edges coming to a node
+     * @param id int id representing a node
+     * @return the in-degree of the node, 0 if the graph does not contain it
+     */
+    public int inDegree(int id) {
+        int[] predecessors = getPredecessorIds(id);
+        return predecessors == null ? 0 : predecessors.length;
+    }
+
+    /**
+     * Gets the number of edges both leaving and coming to a node
+     * @param id int id representing a node
+     * @return the degree of the node, 0 if the graph does not contain it
+     */
+    public int degree(int id) {
+        return outDegree(id) + inDegree(id);
+    }
+
+    /**
+     * Returns a List of all the nodes in the graph, in increasing id order
+     * @return a List of all the nodes in the graph
+     */
+    public List<Node> getAllNodes() {
+        lock.readLock().lock();
+        try {
+            List<Node> nodes = new ArrayList<>(nbNodes);
+            for (int id : nodeIdsAt(active)) nodes.add(new Node(id));
+            return nodes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of nodes in the graph
+     * @return the number of nodes in the graph
+     */
+    public int nbNodes() {
+        lock.readLock().lock();
+        try {
+            return nbNodes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the total number of edges in the graph
+     * @return the total number of edges in the graph
+     */
+    public int nbEdges() {
+        lock.readLock().lock();
+        try {
+            return nbEdges;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds an immutable compressed sparse row snapshot of the graph, merging the base and the deltas
+     * @return a FrozenGraf holding the current nodes and edges of the graph
+     */
+    public FrozenGraf freeze() {
+        lock.readLock().lock();
+        try {
+            return mergeAt(active);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Compaction metrics and settings
+
+    /**
+     * Gets the number of edits waiting to be compacted : edges added, edges removed and nodes removed
+     * @return the size of the active delta, plus the size of the delta being compacted if any
+     */
+    public int getDeltaSize() {
+        lock.readLock().lock();
+        try {
+            return active.size() + (compacting == null ? 0 : compacting.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tells if a compaction is running
+     * @return true if a delta is being folded into a new base
+     */
+    public boolean isCompacting() {
+        lock.readLock().lock();
+        try {
+            return compacting != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of compactions made since the graph was built
+     */
+    public int getCompactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * Gets the duration of the last compaction, in nanoseconds, 0 if there was none
+     */
+    public long getLastCompactionNanos() {
+        return lastCompactionNanos;
+    }
+
+    /**
+     * Gets the total duration of the compactions, in nanoseconds
+     */
+    public long getTotalCompactionNanos() {
+        return totalCompactionNanos;
+    }
+
+    /**
+     * Gets the number of edits in the delta which starts a background compaction
+     */
+    public int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Sets the number of edits in the delta which starts a background compaction
+     * @param compactionThreshold a positive number of edits, Integer.MAX_VALUE to only compact on demand
+     */
+    public void setCompactionThreshold(int compactionThreshold) {
+        lock.writeLock().lock();
+        try {
+            this.compactionThreshold = compactionThreshold;
+            afterEdit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
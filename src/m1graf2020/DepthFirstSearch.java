@@ -0,0 +1,235 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Depth first search giving in one pass the pre-order and the post-order of the nodes, their discovery and finish
+ * times, their parents in the depth first forest and the class of every edge, as primitive arrays indexed by the
+ * compact indexes of the graph. The recursion is replaced by an explicit stack of nodes and row cursors, so paths
+ * of millions of nodes are supported.
+ * Times are counted from 1 to twice the number of nodes reached, a node not reached has the times 0.
+ */
+public final class DepthFirstSearch {
+    /**
+     * Class of an edge u -> v : TREE if v was discovered through it, BACK if v is an ancestor of u (the edge closes a
+     * cycle), FORWARD if v is a descendant of u already finished, CROSS otherwise. An undirected graph has only TREE
+     * and BACK edges, both copies of an edge having the same class
+     */
+    public enum EdgeType {TREE, BACK, FORWARD, CROSS}
+
+    private static final EdgeType[] TYPES = EdgeType.values();
+
+    private final int[] ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] discovery;
+    private final int[] finish;
+    private final int[] parents;
+    private final int[] preOrder;
+    private final int[] postOrder;
+    //class of the edge stored at each position of the rows, as the ordinal + 1, 0 if the edge was not explored
+    private final byte[] edgeTypes;
+    private final int[] counts = new int[TYPES.length];
+
+    /**
+     * Runs a depth first search of the whole graph, the roots being taken in increasing id order, as in getDFS()
+     * @param g the graph, directed or not
+     * @return the orders, times, parents and edge classes of the search
+     */
+    public static DepthFirstSearch of(FrozenGraf g) {
+        int[] roots = new int[g.nbNodes()];
+        for (int i = 0; i < roots.length; i++) roots[i] = i;
+        return new DepthFirstSearch(g, roots);
+    }
+
+    /**
+     * Runs a depth first search from some roots only, in the given order
+     * @param g the graph, directed or not
+     * @param root_ids ids of the nodes the search starts from
+     * @return the orders, times, parents and edge classes of the search
+     * @throws IllegalArgumentException if the graph does not contain one of the roots
+     */
+    public static DepthFirstSearch from(FrozenGraf g, int... root_ids) {
+        int[] roots = new int[root_ids.length];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = g.indexOf(root_ids[i]);
+            if (roots[i] < 0) throw new IllegalArgumentException("The graph does not contain the node " + root_ids[i]);
+        }
+        return new DepthFirstSearch(g, roots);
+    }
+
+    private DepthFirstSearch(FrozenGraf g, int[] roots) {
+        ids = g.ids();
+        offsets = g.offsets();
+        targets = g.targets();
+        int n = ids.length;
+        boolean directed = g.isDirected();
+        discovery = new int[n];
+        finish = new int[n];
+        parents = new int[n];
+        Arrays.fill(parents, -1);
+        edgeTypes = new byte[targets.length];
+        int[] pre = new int[n];
+        int[] post = new int[n];
+        int[] stack = new int[n];
+        int[] cursor = new int[n];
+        //undirected, the first copy of the tree edge met in the row of a node, back to its parent, is a tree edge too
+        boolean[] parentMet = directed ? null : new boolean[n];
+        int time = 0;
+        int nbPre = 0;
+        int nbPost = 0;
+
+        for (int root : roots) {
+            if (discovery[root] != 0) continue;
+            int top = 0;
+            stack[0] = root;
+            cursor[root] = offsets[root];
+            discovery[root] = ++time;
+            pre[nbPre++] = root;
+            while (top >= 0) {
+                int u = stack[top];
+                if (cursor[u] < offsets[u + 1]) {
+                    int k = cursor[u]++;
+                    int v = targets[k];
+                    EdgeType type;
+                    if (discovery[v] == 0) {
+                        type = EdgeType.TREE;
+                        parents[v] = u;
+                        cursor[v] = offsets[v];
+                        discovery[v] = ++time;
+                        pre[nbPre++] = v;
+                        stack[++top] = v;
+                    } else if (finish[v] == 0) {
+                        if (!directed && v == parents[u] && !parentMet[u]) {
+                            parentMet[u] = true;
+                            type = EdgeType.TREE;
+                        } else {
+                            type = EdgeType.BACK;
+                        }
+                    } else if (!directed) {
+                        //the other copy of a back edge, from the ancestor
+                        type = EdgeType.BACK;
+                    } else {
+                        type = discovery[u] < discovery[v] ? EdgeType.FORWARD : EdgeType.CROSS;
+                    }
+                    edgeTypes[k] = (byte) (type.ordinal() + 1);
+                    counts[type.ordinal()]++;
+                } else {
+                    finish[u] = ++time;
+                    post[nbPost++] = u;
+                    top--;
+                }
+            }
+        }
+        preOrder = Arrays.copyOf(pre, nbPre);
+        postOrder = Arrays.copyOf(post, nbPost);
+    }
+
+    /**
+     * Gets the compact indexes of the nodes reached, in the order they were discovered
+     */
+    public int[] getPreOrder() {
+        return preOrder;
+    }
+
+    /**
+     * Gets the compact indexes of the nodes reached, in the order they were finished.
+     * Reversed, it is a topological order of a graph without back edges
+     */
+    public int[] getPostOrder() {
+        return postOrder;
+    }
+
+    /**
+     * Gets the discovery times of the nodes, the array itself and not a copy
+     * @return the time at which the node of each compact index was discovered, 0 if it was not reached
+     */
+    public int[] getDiscoveryTimes() {
+        return discovery;
+    }
+
+    /**
+     * Gets the finish times of the nodes, the array itself and not a copy
+     * @return the time at which the node of each compact index was finished, 0 if it was not reached
+     */
+    public int[] getFinishTimes() {
+        return finish;
+    }
+
+    /**
+     * Gets the parents of the nodes in the depth first forest, the array itself and not a copy
+     * @return the compact index of the parent of the node of each compact index, -1 for the roots and the nodes
+     * not reached
+     */
+    public int[] getParents() {
+        return parents;
+    }
+
+    /**
+     * Gets the compact index of a node, the index of its cell in the times and parents
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the graph does not contain it
+     */
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Gets the id of the node stored at a compact index
+     * @param index an index between 0 and the number of nodes -1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the class of the edge from a node to another
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the class of the edge, or null if the graph does not contain it or the search did not explore it
+     */
+    public EdgeType getEdgeType(int from_id, int to_id) {
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        if (u < 0 || v < 0) return null;
+        int k = Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v);
+        return k < 0 || edgeTypes[k] == 0 ? null : TYPES[edgeTypes[k] - 1];
+    }
+
+    /**
+     * Gets the number of edges of a class, each copy of an undirected edge being counted
+     * @param type a class of edges
+     * @return the number of edges of the class explored by the search
+     */
+    public int count(EdgeType type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * Gets all the edges of a class
+     * @param type a class of edges
+     * @return a list of the edges of the class explored by the search, in the order of the rows
+     */
+    public List<Edge> getEdges(EdgeType type) {
+        List<Edge> edges = new ArrayList<>(count(type));
+        byte code = (byte) (type.ordinal() + 1);
+        for (int u = 0; u < ids.length; u++) {
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                if (edgeTypes[k] == code) edges.add(new Edge(ids[u], ids[targets[k]]));
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Tells if the part of the graph explored holds a cycle, as in if the search found a back edge
+     * @return true if there is a cycle, false if not
+     */
+    public boolean hasCycle() {
+        return count(EdgeType.BACK) > 0;
+    }
+}
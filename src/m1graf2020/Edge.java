@@ -99,6 +99,6 @@ public class Edge implements Comparable<Edge> {
 
     @Override
     public int hashCode() {
-        return this.from.hashCode() * this.to.hashCode();
+        return 31 * this.from.hashCode() + this.to.hashCode();
     }
 }
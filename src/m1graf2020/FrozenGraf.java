@@ -0,0 +1,578 @@
+package m1graf2020;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Immutable snapshot of a graph in the compressed sparse row (CSR) formalism.
+ * Nodes are renumbered with a compact index (0 to nbNodes()-1, in increasing id order) and the successors
+ * of the node of index i are the indexes stored in targets[offsets[i]] to targets[offsets[i+1]-1], sorted.
+ * If some edges have a weight, weights[k] is the weight of the edge stored at targets[k], 0 for an edge without weight.
+ * The shortest path searches count an edge without weight as 1, whether or not the other edges have a weight.
+ * Obtained from {@link Graf#freeze()} or {@link UndirectedGraf#freeze()}, it cannot be modified.
+ */
+public final class FrozenGraf {
+    private final int[] ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] inDegrees;
+    private final int nbEdges;
+    private final boolean directed;
+    //the reversed graph, built the first time it is needed
+    private volatile FrozenGraf reverse;
+    //the costs of the edges for the shortest path searches, built the first time they are needed
+    private volatile int[] costs;
+    //the point-to-point searches kept between the queries, built the first time a path is asked
+    private volatile SearchPool<BidirectionalSearch> searches;
+
+    FrozenGraf(int[] ids, int[] offsets, int[] targets, int[] weights, int nbEdges, boolean directed) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.nbEdges = nbEdges;
+        this.directed = directed;
+        if (directed) {
+            inDegrees = new int[ids.length];
+            for (int t : targets) inDegrees[t]++;
+        } else {
+            inDegrees = null;
+        }
+    }
+
+    /**
+     * Builds the CSR snapshot of a graph
+     * @param g the graph to be frozen
+     * @param directed false if the adjacency of g is symmetric (undirected graph)
+     * @return the CSR snapshot of g
+     */
+    static FrozenGraf of(Graf g, boolean directed) {
+        int[] sorted = g.sortedIndexes();
+        int n = sorted.length;
+        int[] ids = new int[n];
+        int[] offsets = new int[n + 1];
+        int[] rank = new int[g.nodeBound()];
+        for (int i = 0; i < n; i++) {
+            int u = sorted[i];
+            ids[i] = g.registry.idAt(u);
+            rank[u] = i;
+            offsets[i + 1] = offsets[i] + g.outDeg.get(u);
+        }
+
+        int[] targets = new int[offsets[n]];
+        int[] weights = new int[offsets[n]];
+        boolean weighted = false;
+        long[] row = new long[0];
+        for (int i = 0; i < n; i++) {
+            int u = sorted[i];
+            int degree = g.outDeg.get(u);
+            int[] successors = g.outTargets.get(u);
+            int[] edges = g.outEdges.get(u);
+            if (row.length < degree) row = new long[degree];
+            //targets and weights are sorted together, packed as target << 32 | weight
+            for (int k = 0; k < degree; k++) {
+                int weight = g.edgeWeight.get(edges[k]);
+                weighted |= weight != 0;
+                row[k] = ((long) rank[successors[k]] << 32) | (weight & 0xFFFFFFFFL);
+            }
+            Arrays.sort(row, 0, degree);
+            for (int k = 0; k < degree; k++) {
+                targets[offsets[i] + k] = (int) (row[k] >>> 32);
+                weights[offsets[i] + k] = (int) row[k];
+            }
+        }
+        return new FrozenGraf(ids, offsets, targets, weighted ? weights : null, g.nbEdges(), directed);
+    }
+
+    int[] ids() { return ids; }
+
+    int[] offsets() { return offsets; }
+
+    int[] targets() { return targets; }
+
+    int[] weights() { return weights; }
+
+    /**
+     * Gets the costs of the edges for the shortest path searches : the weight of the edge, or 1 for an edge without
+     * weight, so that an edge costs the same whether or not the other edges of the graph have weights
+     * @return the cost of the edge stored at each position of targets, the weights array itself if no edge has the
+     * weight 0, or null if no edge has a weight and they all cost 1
+     */
+    int[] costs() {
+        int[] c = costs;
+        if (c == null && weights != null) {
+            c = weights;
+            for (int k = 0; k < c.length; k++) {
+                if (c[k] != 0) continue;
+                if (c == weights) c = weights.clone();
+                c[k] = 1;
+            }
+            costs = c;
+        }
+        return c;
+    }
+
+    int[] inDegrees() { return inDegrees; }
+
+    /**
+     * Gets the compact index of a node
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the graph does not contain it
+     */
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Gets the id of the node stored at a compact index
+     * @param index an index between 0 and nbNodes()-1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Tells if the graph was frozen from a directed graph
+     * @return true if directed, false if undirected
+     */
+    public boolean isDirected() {
+        return directed;
+    }
+
+    /**
+     * Gets the number of nodes in the graph
+     * @return the number of nodes in the graph
+     */
+    public int nbNodes() { return ids.length; }
+
+    /**
+     * Gets the total number of edges in the graph
+     * @return the total number of edges in the graph
+     */
+    public int nbEdges() { return nbEdges; }
+
+    /**
+     * Tests if the graph contains a node
+     * @param id int id representing the node we search for in the graph
+     * @return true if the graph contains the node, false if not
+     */
+    public boolean existsNode(int id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * Tests if the graph contains a node
+     * @param n node we search for in the graph
+     * @return true if the graph contains the node, false if not
+     */
+    public boolean existsNode(Node n) {
+        return existsNode(n.getId());
+    }
+
+    /**
+     * Returns a List of all the nodes in the graph, in increasing id order
+     * @return a List of all the nodes in the graph
+     */
+    public List<Node> getAllNodes() {
+        List<Node> nodes = new ArrayList<>(ids.length);
+        for (int id : ids) nodes.add(new Node(id));
+        return nodes;
+    }
+
+    /**
+     * Gets the list of all the successors of a node, in increasing id order
+     * @param id int representing the node whose successors we want
+     * @return the list of successors, or null if the graph does not contain the node
+     */
+    public List<Node> getSuccessors(int id) {
+        int u = indexOf(id);
+        if (u < 0) return null;
+        List<Node> successors = new ArrayList<>(offsets[u + 1] - offsets[u]);
+        for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+            successors.add(new Node(ids[targets[k]]));
+        }
+        return successors;
+    }
+
+    /**
+     * Gets the list of all the successors of a node, in increasing id order
+     * @param n node whose successors we want
+     * @return the list of successors, or null if the graph does not contain the node
+     */
+    public List<Node> getSuccessors(Node n) {
+        return getSuccessors(n.getId());
+    }
+
+    /**
+     * Gets the ids of all the successors of a node, in increasing order, without creating any Node
+     * @param id int representing the node whose successors we want
+     * @return an int array of the successor ids, or null if the graph does not contain the node
+     */
+    public int[] getSuccessorIds(int id) {
+        int u = indexOf(id);
+        if (u < 0) return null;
+        int[] successors = new int[offsets[u + 1] - offsets[u]];
+        for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+            successors[k - offsets[u]] = ids[targets[k]];
+        }
+        return successors;
+    }
+
+    /**
+     * Gets the number of edges leaving a node
+     * @param id int id representing a node
+     * @return an int representing the number of edges leaving a node
+     */
+    public int outDegree(int id) {
+        int u = indexOf(id);
+        return u < 0 ? 0 : offsets[u + 1] - offsets[u];
+    }
+
+    /**
+     * Gets the number of edges leaving a node
+     * @param n a node
+     * @return an int representing the number of edges leaving a node
+     */
+    public int outDegree(Node n) {
+        return outDegree(n.getId());
+    }
+
+    /**
+     * Gets the number of edges coming to a node
+     * @param id int id representing a node
+     * @return an int representing the number of edges coming to a node
+     */
+    public int inDegree(int id) {
+        if (!directed) return outDegree(id);
+        int u = indexOf(id);
+        return u < 0 ? 0 : inDegrees[u];
+    }
+
+    /**
+     * Gets the number of edges coming to a node
+     * @param n a node
+     * @return an int representing the number of edges coming to a node
+     */
+    public int inDegree(Node n) {
+        return inDegree(n.getId());
+    }
+
+    /**
+     * Gets the number of edges both leaving and coming to a node
+     * @param id int id representing a node
+     * @return an int representing the number of edges both leaving and coming to a node
+     */
+    public int degree(int id) {
+        if (!directed) return outDegree(id);
+        return inDegree(id) + outDegree(id);
+    }
+
+    /**
+     * Gets the number of edges both leaving and coming to a node
+     * @param n a node
+     * @return an int representing the number of edges both leaving and coming to a node
+     */
+    public int degree(Node n) {
+        return degree(n.getId());
+    }
+
+    /**
+     * Tests if there is an edge from the node of index u to the node of index v, by binary search in u's row
+     */
+    private boolean hasSuccessor(int u, int v) {
+        return Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v) >= 0;
+    }
+
+    /**
+     * Gets the position of the edge from one node to another in the targets array
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the position of the edge, or -1 if the graph does not contain it
+     */
+    int find(int from_id, int to_id) {
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        if (u < 0 || v < 0) return -1;
+        int k = Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v);
+        return k < 0 ? -1 : k;
+    }
+
+    /**
+     * Tests the adjacency of two nodes, as in if the graph contains an edge from one to the other
+     * @param u_id an int id representing a node
+     * @param v_id an int id representing another node
+     * @return true if the nodes are adjacent, false if not
+     */
+    public boolean adjacent(int u_id, int v_id) {
+        int u = indexOf(u_id);
+        int v = indexOf(v_id);
+        if (u < 0 || v < 0) return false;
+        return hasSuccessor(u, v) || hasSuccessor(v, u);
+    }
+
+    /**
+     * Tests the adjacency of two nodes, as in if the graph contains an edge from one to the other
+     * @param u a node
+     * @param v another node
+     * @return true if the nodes are adjacent, false if not
+     */
+    public boolean adjacent(Node u, Node v) {
+        return adjacent(u.getId(), v.getId());
+    }
+
+    /**
+     * Tests if the graph contains an edge from one node to another
+     * @param u_id int id representing a node
+     * @param v_id int id representing another node
+     * @return true if there is an edge between the two nodes, false if not
+     */
+    public boolean existsEdge(int u_id, int v_id) {
+        return adjacent(u_id, v_id);
+    }
+
+    /**
+     * Tests if the graph contains an edge from one node to another
+     * @param u a node
+     * @param v another node
+     * @return true if there is an edge between the two nodes, false if not
+     */
+    public boolean existsEdge(Node u, Node v) {
+        return adjacent(u.getId(), v.getId());
+    }
+
+    /**
+     * Tests if the graph contains an edge
+     * @param e an edge between two nodes
+     * @return true if the graph contains the edge, false if not
+     */
+    public boolean existsEdge(Edge e) {
+        int u = indexOf(e.getFrom().getId());
+        int v = indexOf(e.getTo().getId());
+        if (u < 0 || v < 0) return false;
+        return hasSuccessor(u, v);
+    }
+
+    /**
+     * Gets the weight of the edge from one node to another
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the weight of the edge, or 0 if the edge has no weight or does not exist
+     */
+    public int getWeight(int from_id, int to_id) {
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        if (weights == null || u < 0 || v < 0) return 0;
+        int k = Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v);
+        return k < 0 ? 0 : weights[k];
+    }
+
+    /**
+     * Gets the graph with all its edges reversed, so that the successors of a node in it are its predecessors here.
+     * It is built in linear time the first time it is asked for, then kept
+     * @return the reversed graph, or this graph if it is undirected
+     */
+    public FrozenGraf getReverse() {
+        if (!directed) return this;
+        FrozenGraf r = reverse;
+        if (r == null) {
+            int n = ids.length;
+            int[] reverseOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) reverseOffsets[v + 1] = reverseOffsets[v] + inDegrees[v];
+            int[] reverseTargets = new int[targets.length];
+            int[] reverseWeights = weights == null ? null : new int[targets.length];
+            int[] cursor = Arrays.copyOf(reverseOffsets, n);
+            //rows are read in increasing order, so each reversed row is filled sorted
+            for (int u = 0; u < n; u++) {
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int slot = cursor[targets[k]]++;
+                    reverseTargets[slot] = u;
+                    if (reverseWeights != null) reverseWeights[slot] = weights[k];
+                }
+            }
+            r = new FrozenGraf(ids, reverseOffsets, reverseTargets, reverseWeights, nbEdges, true);
+            r.reverse = this;
+            reverse = r;
+        }
+        return r;
+    }
+
+    /**
+     * Gets the pool of the point-to-point searches, whose arrays are kept between the queries
+     */
+    SearchPool<BidirectionalSearch> searches() {
+        SearchPool<BidirectionalSearch> pool = searches;
+        if (pool == null) {
+            synchronized (this) {
+                if (searches == null) searches = new SearchPool<>(() -> new BidirectionalSearch(this));
+                pool = searches;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Exports the graph in a binary file which can be opened without deserialisation by {@link MappedGraf#open(File)}
+     * @param file file to be written
+     * @throws IOException if the file could not be written
+     */
+    public void toBinaryFile(File file) throws IOException {
+        MappedGraf.write(this, file);
+    }
+
+    /**
+     * Builds the adjacency matrix of the graph in the CSR and COO sparse formalisms, weights as values,
+     * 1 for an edge without weight
+     * @return a SparseMatrix with rows and columns in increasing id order
+     */
+    public SparseMatrix toSparseMatrix() {
+        return SparseMatrix.of(this);
+    }
+
+    /**
+     * Computes the transitive closure of the graph as a bit matrix, on all the cores, see {@link TransitiveClosure}
+     * @return a BitMatrix where (u, v) is set if there is a path from u to v, rows and columns in increasing id order
+     * @throws IllegalArgumentException if the graph has too many nodes for a bit matrix
+     */
+    public BitMatrix getTransitiveClosure() {
+        return TransitiveClosure.of(this);
+    }
+
+    /**
+     * Builds an int array representing the graph in the Successor Array formalism
+     * @return an int array representing the graph in the Successor Array formalism
+     */
+    public int[] toSuccessorArray() {
+        int[] sa = new int[targets.length + ids.length];
+        int i = 0;
+        for (int u = 0; u < ids.length; u++) {
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                sa[i++] = ids[targets[k]];
+            }
+            sa[i++] = 0;
+        }
+        return sa;
+    }
+
+    /**
+     * Computes a breadth-first-search of the graph, starting from the node with the smallest id
+     * @return a list of nodes representing a breadth-first-search of the graph in order
+     */
+    public List<Node> getBFS() {
+        return new Listing().bfs();
+    }
+
+    /**
+     * Computes a breadth-first-search of the graph from any nodes, with the distances and parents of all the nodes,
+     * on all the cores, see {@link BreadthFirstSearch}
+     * @param source_ids ids of the nodes the search starts from
+     * @return the distances and the parents of the nodes, as int arrays
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public BreadthFirstSearch breadthFirstSearch(int... source_ids) {
+        return BreadthFirstSearch.from(this, source_ids);
+    }
+
+    /**
+     * Computes the distances from several sources to all the nodes, sharing each scan of a row between up to 64
+     * sources, see {@link MultiSourceBFS}
+     * @param source_ids ids of the sources
+     * @return a matrix where [i][v] is the distance from the i-th source to the node of the v-th smallest id,
+     * -1 if it does not reach it
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public int[][] distancesFrom(int... source_ids) {
+        return MultiSourceBFS.distances(this, source_ids);
+    }
+
+    /**
+     * Computes the shortest paths from some nodes to all the nodes, with the weights of the edges, see {@link ShortestPaths}
+     * @param source_ids ids of the nodes the paths start from
+     * @return the distances and the parents of the nodes, as primitive arrays
+     * @throws IllegalArgumentException if the graph does not contain one of the sources or has a negative weight
+     */
+    public ShortestPaths shortestPathsFrom(int... source_ids) {
+        return ShortestPaths.from(this, source_ids);
+    }
+
+    /**
+     * Finds a shortest path between two nodes, with the weights of the edges, searching from both ends at once
+     * @param from_id int id of the origin
+     * @param to_id int id of the destination
+     * @return the path, which does not exist if the destination cannot be reached
+     * @throws IllegalArgumentException if the graph does not contain one of the nodes or has a negative weight
+     */
+    public Route shortestPath(int from_id, int to_id) {
+        return ShortestPaths.between(this, from_id, to_id);
+    }
+
+    /**
+     * Builds an index answering shortest path queries between two nodes with landmarks, see {@link LandmarkIndex}
+     * @param nbLandmarks number of landmarks whose distance tables are computed
+     * @return the index
+     * @throws IllegalArgumentException if the number of landmarks is negative or the graph has a negative weight
+     */
+    public LandmarkIndex landmarkIndex(int nbLandmarks) {
+        return new LandmarkIndex(this, nbLandmarks);
+    }
+
+    /**
+     * Computes the distances between all the pairs of nodes, with the weights of the edges, see {@link AllPairsShortestPaths}
+     * @param paths true to keep the predecessors of the nodes, to rebuild the paths
+     * @return the distance matrix
+     * @throws IllegalArgumentException if the graph has a negative weight or is too large for a distance matrix
+     */
+    public AllPairsShortestPaths allPairsShortestPaths(boolean paths) {
+        return AllPairsShortestPaths.of(this, paths);
+    }
+
+    /**
+     * Finds the strongly connected components of the graph, see {@link StronglyConnectedComponents}
+     * @param parallel true to find them on all the cores, false to run the Tarjan algorithm in the calling thread
+     * @return the components, numbered in a reverse topological order of the condensed graph
+     */
+    public StronglyConnectedComponents stronglyConnectedComponents(boolean parallel) {
+        return StronglyConnectedComponents.of(this, parallel);
+    }
+
+    /**
+     * Sorts the nodes in a topological order, grouped by the length of the longest path ending at them, see {@link TopologicalOrder}
+     * @return the order and the levels of the nodes, without the nodes on a cycle or reached from one
+     */
+    public TopologicalOrder topologicalOrder() {
+        return TopologicalOrder.of(this);
+    }
+
+    /**
+     * Computes a depth-first-search of the graph, nodes are listed when they are finished
+     * @return a list of nodes representing a depth-first-search of the graph in order
+     */
+    public List<Node> getDFS() {
+        return new Listing().dfs();
+    }
+
+    /**
+     * Reads the rows of the graph for getBFS() and getDFS(), successors being explored in increasing id order
+     */
+    private final class Listing extends NodeListing {
+        int bound() { return ids.length; }
+        int nbNodes() { return ids.length; }
+        int root(int i) { return i; }
+        int rowStart(int u) { return offsets[u]; }
+        int rowEnd(int u) { return offsets[u + 1]; }
+        int target(int u, int k) { return targets[k]; }
+        Node node(int u) { return new Node(ids[u]); }
+    }
+
+    /**
+     * Computes a depth-first-search of the whole graph with the pre-order, post-order, discovery and finish times of the
+     * nodes and the class of every edge, see {@link DepthFirstSearch}
+     * @return the orders, times, parents and edge classes of the search, as int arrays
+     */
+    public DepthFirstSearch depthFirstSearch() {
+        return DepthFirstSearch.of(this);
+    }
+}
@@ -2,20 +2,63 @@ package m1graf2020;
 
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Classe de gestion de graphs
+ * Nodes are stored at a dense internal index and the successors of each node in a growable int array of
+ * internal indexes, so that adding, removing or testing an edge does not create any object.
+ * The predecessors of each node are kept the same way, so in-edges and in-degrees do not scan the whole graph.
+ * Edges are also indexed by their pair of nodes, so finding, reading or removing an edge is done in constant time.
+ * Weights and labels are stored in columns indexed by edge id, labels being dictionary encoded.
+ * These arrays are stored in pages which a snapshot shares with the graph, the graph copying a page, not a whole array,
+ * the first time it modifies it after the snapshot.
  * @author Baulard Guillaume - Buronfosse Titouan
  */
 public class Graf {
-    //Map<Node, List<Node>> adjList;
-    TreeMap<Node, List<Node>> adjList;
-    List<Edge> edgeList;
+    static final int FREE = -1;
+    private static final int[] EMPTY_ROW = new int[0];
+    private static final Pattern DOT_ATTRIBUTE = Pattern.compile("(\\w+)\\s*=\\s*(\"((?:[^\"\\\\]|\\\\.)*)\"|[^,\\s]+)");
+
+    //Nodes : id <-> internal index, then internal index -> number of successors, successors and edge ids
+    NodeRegistry registry = new NodeRegistry();
+    IntPages outDeg = new IntPages(16);
+    RowPages outTargets = new RowPages(16);
+    RowPages outEdges = new RowPages(16);
+    //Predecessors : internal index -> number of predecessors, predecessors and edge ids
+    IntPages inDeg = new IntPages(16);
+    RowPages inSources = new RowPages(16);
+    RowPages inEdges = new RowPages(16);
+
+    //Edges : edge id -> origin and destination internal indexes (edgeFrom is FREE if the id is unused)
+    IntPages edgeFrom = new IntPages(16);
+    IntPages edgeTo = new IntPages(16);
+    IntPages edgeWeight = new IntPages(16);
+    IntPages edgeLabel = new IntPages(16);
+    LabelDictionary labels = new LabelDictionary();
+    //position of the edge in the row of its origin, and in the predecessor row of its destination
+    IntPages edgeOutSlot = new IntPages(16);
+    IntPages edgeToSlot = new IntPages(16);
+    //pair of internal indexes -> id of an edge, the other edges between the same pair are chained by edgeNextSame
+    LongIntMap edgeIndex = new LongIntMap();
+    int[] edgeNextSame = new int[16];
+    int edgeBound;
+    private int[] freeEdges = new int[16];
+    private int nbFreeEdges;
+    int nbEdges;
+
+    //Snapshots : true for a snapshot, which cannot be modified
+    private boolean readOnly;
+    //number of snapshots taken, and for each row the number of snapshots taken when its array was allocated
+    private int generation;
+    private int[] outRowGeneration = new int[16];
+    private int[] inRowGeneration = new int[16];
+    //compressed sparse row view of the graph, kept until the graph is modified
+    private FrozenGraf frozen;
 
     public Graf() {
-        adjList = new TreeMap<>();
-        edgeList = new ArrayList<>();
     }
 
     /**
@@ -23,17 +66,25 @@ public class Graf {
      * @param sa an int array in the Successor Array formalism
      */
     public Graf(int... sa) {
-        adjList = new TreeMap<>();
-        edgeList = new ArrayList<>();
+        this(sa, null);
+    }
+
+    /**
+     * Builds a directed weighted graph from an int array representing a Successor Array Formalism
+     * @param sa an int array in the Successor Array formalism
+     * @param weights an int array as long as sa, weights[i] is the weight of the edge to sa[i] (ignored where sa[i] is 0),
+     *                or null for an unweighted graph
+     */
+    public Graf(int[] sa, int[] weights) {
+        if (weights != null && weights.length != sa.length) throw new IllegalArgumentException("sa and weights must have the same length");
         int from = 1;
         addNode(from);
         for (int i = 0; i < sa.length; i++)  {
-            if (i == sa.length -1) break;
             if (sa[i] != 0) {
-                //if(!getSuccessors(from).contains(new Node(sa[i]))) getSuccessors(from).add(new Node(sa[i]));
-                if(!adjList.get(new Node(from)).contains(new Node(sa[i]))) adjList.get(new Node(from)).add(new Node(sa[i]));
-                edgeList.add(new Edge(new Node(from), new Node(sa[i])));
-            } else {
+                int u = indexOf(from);
+                int v = indexOrAdd(sa[i]);
+                if (findEdge(u, v) < 0) newEdge(u, v, weights == null ? 0 : weights[i], null);
+            } else if (i != sa.length -1) {
                 addNode(++from);
             }
         }
@@ -51,84 +102,553 @@ public class Graf {
             extension = file.getName().substring(i+1);
         }
         if (!extension.equals("dot")) throw new IOException("File is not .dot");
-        adjList = new TreeMap<>();
-        edgeList = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        reader.readLine();
-        String line = reader.readLine();
-        while (line != null) {
-            if (line.contains("}")) break;
-            else {
-                int node_id = Integer.parseInt(String.valueOf(line.charAt(1)));
-                addNode(node_id);
-                int index = 6;
-                while (index < line.length()) {
-                    addEdge(node_id, Integer.parseInt(String.valueOf(line.charAt(index))));
-                    index += 3;
-                }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine();
+            String line = reader.readLine();
+            while (line != null) {
+                line = line.trim();
+                if (line.startsWith("}")) break;
+                if (!line.isEmpty()) readDotStatement(line);
                 line = reader.readLine();
             }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("File is not a valid DOT graph", e);
+        }
+    }
+
+    /**
+     * Reads a line of a Dot file : "u;", "u -> v, w;" or "u -> v [weight=3, label="x"];"
+     * @param statement the line, without leading and trailing spaces
+     */
+    private void readDotStatement(String statement) {
+        if (statement.endsWith(";")) statement = statement.substring(0, statement.length() -1);
+        int weight = 0;
+        String label = null;
+        int bracket = statement.indexOf('[');
+        if (bracket >= 0) {
+            Matcher attribute = DOT_ATTRIBUTE.matcher(statement.substring(bracket + 1, statement.lastIndexOf(']')));
+            while (attribute.find()) {
+                if (attribute.group(1).equals("weight")) {
+                    weight = Integer.parseInt(attribute.group(2));
+                } else if (attribute.group(1).equals("label")) {
+                    label = attribute.group(3) != null ? attribute.group(3).replaceAll("\\\\(.)", "$1") : attribute.group(2);
+                }
+            }
+            statement = statement.substring(0, bracket);
+        }
+
+        String[] parts = statement.split("->|--");
+        int u = indexOrAdd(Integer.parseInt(parts[0].trim()));
+        if (parts.length > 1) {
+            for (String target : parts[1].split(",")) {
+                newEdge(u, indexOrAdd(Integer.parseInt(target.trim())), weight, label);
+            }
+        }
+    }
+
+    /**
+     * Gets the internal index of a node
+     * @param id int id representing a node
+     * @return the internal index of the node, or FREE if the graph does not contain it
+     */
+    int indexOf(int id) {
+        return registry.indexOf(id);
+    }
+
+    /**
+     * Gets the internal index of a node, adds the node to the graph if needed
+     */
+    int indexOrAdd(int id) {
+        int u = registry.indexOf(id);
+        return u != FREE ? u : registerNode(new Node(id));
+    }
+
+    /**
+     * Gets the internal index of a node, adds this Node object to the graph if needed
+     */
+    int indexOrAdd(Node n) {
+        int u = registry.indexOf(n.getId());
+        return u != FREE ? u : registerNode(n);
+    }
+
+    private int registerNode(Node n) {
+        checkWritable();
+        int u = registry.register(n);
+        if (u == outDeg.capacity()) {
+            int capacity = u << 1;
+            outDeg.grow(capacity);
+            outTargets.grow(capacity);
+            outEdges.grow(capacity);
+            inDeg.grow(capacity);
+            inSources.grow(capacity);
+            inEdges.grow(capacity);
+            outRowGeneration = Arrays.copyOf(outRowGeneration, capacity);
+            inRowGeneration = Arrays.copyOf(inRowGeneration, capacity);
+        }
+        outDeg.set(u, 0);
+        outTargets.set(u, EMPTY_ROW);
+        outEdges.set(u, EMPTY_ROW);
+        inDeg.set(u, 0);
+        inSources.set(u, EMPTY_ROW);
+        inEdges.set(u, EMPTY_ROW);
+        return u;
+    }
+
+    private void freeNode(int u) {
+        checkWritable();
+        registry.unregister(u);
+        outTargets.set(u, EMPTY_ROW);
+        outEdges.set(u, EMPTY_ROW);
+        inSources.set(u, EMPTY_ROW);
+        inEdges.set(u, EMPTY_ROW);
+    }
+
+    /**
+     * Gets a bound of the internal indexes : every index used by a node is lower than it
+     */
+    int nodeBound() {
+        return registry.bound();
+    }
+
+    /**
+     * Gets the internal indexes of all the nodes, in increasing id order
+     * @return the internal indexes of the nodes, must not be modified
+     */
+    int[] sortedIndexes() {
+        return registry.sortedIndexes();
+    }
+
+    /**
+     * Grows the edge columns and the edge index before a bulk load, so they are not grown one page at a time.
+     * The columns grow by adding pages, and edgeNextSame at least doubles, so that repeated small batches do not copy
+     * them each time
+     * @param capacity bound of the edge ids the graph will use
+     */
+    void reserveEdges(int capacity) {
+        checkWritable();
+        growEdges(capacity);
+        if (edgeIndex.size() == 0) edgeIndex = new LongIntMap(capacity);
+    }
+
+    /**
+     * Grows the row and the predecessor row of a node before a bulk load
+     * @param u internal index of the node
+     * @param outCapacity number of edges the row will hold
+     * @param inCapacity number of edges the predecessor row will hold
+     */
+    void reserveRows(int u, int outCapacity, int inCapacity) {
+        checkWritable();
+        if (outCapacity > outTargets.get(u).length) {
+            outTargets.set(u, Arrays.copyOf(outTargets.get(u), outCapacity));
+            outEdges.set(u, Arrays.copyOf(outEdges.get(u), outCapacity));
+            outRowGeneration[u] = generation;
+        }
+        if (inCapacity > inSources.get(u).length) {
+            inSources.set(u, Arrays.copyOf(inSources.get(u), inCapacity));
+            inEdges.set(u, Arrays.copyOf(inEdges.get(u), inCapacity));
+            inRowGeneration[u] = generation;
+        }
+    }
+
+    /**
+     * Checks the graph can be modified before any modification, and drops the frozen view it no longer matches
+     */
+    private void checkWritable() {
+        if (readOnly) throw new UnsupportedOperationException("A snapshot cannot be modified");
+        frozen = null;
+    }
+
+    /**
+     * Grows the edge columns so that they hold a number of edge ids
+     * @param capacity bound of the edge ids the graph will use
+     */
+    private void growEdges(int capacity) {
+        if (capacity <= edgeFrom.capacity()) return;
+        edgeFrom.grow(capacity);
+        edgeTo.grow(capacity);
+        edgeWeight.grow(capacity);
+        edgeLabel.grow(capacity);
+        edgeOutSlot.grow(capacity);
+        edgeToSlot.grow(capacity);
+        if (edgeNextSame.length < edgeFrom.capacity()) {
+            edgeNextSame = Arrays.copyOf(edgeNextSame, Math.max(edgeFrom.capacity(), edgeNextSame.length << 1));
+        }
+    }
+
+    /**
+     * Copies the row of a node before a position is removed, if the row was allocated before the last snapshot.
+     * Appending does not need any copy, the snapshot only reads the row up to its own degree
+     * @param u internal index of the node
+     */
+    private void ownRow(int u) {
+        if (outRowGeneration[u] != generation) {
+            outTargets.set(u, outTargets.get(u).clone());
+            outEdges.set(u, outEdges.get(u).clone());
+            outRowGeneration[u] = generation;
+        }
+    }
+
+    /**
+     * Copies the predecessor row of a node before a position is removed, if the row was allocated before the last snapshot
+     * @param v internal index of the node
+     */
+    private void ownInRow(int v) {
+        if (inRowGeneration[v] != generation) {
+            inSources.set(v, inSources.get(v).clone());
+            inEdges.set(v, inEdges.get(v).clone());
+            inRowGeneration[v] = generation;
+        }
+    }
+
+    /**
+     * Appends an edge at the end of the row of a node
+     * @param u internal index of the node owning the row
+     * @param target internal index stored in the row
+     * @param e id of the edge
+     * @return the position of the edge in the row
+     */
+    int appendToRow(int u, int target, int e) {
+        checkWritable();
+        int slot = outDeg.get(u);
+        if (slot == outTargets.get(u).length) {
+            int capacity = Math.max(4, slot << 1);
+            outTargets.set(u, Arrays.copyOf(outTargets.get(u), capacity));
+            outEdges.set(u, Arrays.copyOf(outEdges.get(u), capacity));
+            outRowGeneration[u] = generation;
+        }
+        outTargets.get(u)[slot] = target;
+        outEdges.get(u)[slot] = e;
+        outDeg.set(u, slot + 1);
+        return slot;
+    }
+
+    /**
+     * Removes a position from the row of a node by moving the last edge of the row into it
+     * @param u internal index of the node owning the row
+     * @param slot position to be removed
+     */
+    void removeFromRow(int u, int slot) {
+        checkWritable();
+        //the row is owned even when its last position is removed, as the next append writes over that position
+        ownRow(u);
+        int last = outDeg.get(u) - 1;
+        outDeg.set(u, last);
+        if (slot != last) {
+            int moved = outEdges.get(u)[last];
+            outTargets.get(u)[slot] = outTargets.get(u)[last];
+            outEdges.get(u)[slot] = moved;
+            if (edgeFrom.get(moved) == u && edgeOutSlot.get(moved) == last) edgeOutSlot.set(moved, slot);
+            else edgeToSlot.set(moved, slot);
+        }
+    }
+
+    /**
+     * Appends an edge at the end of the predecessor row of a node
+     * @param v internal index of the node owning the row
+     * @param source internal index stored in the row
+     * @param e id of the edge
+     * @return the position of the edge in the row
+     */
+    int appendToInRow(int v, int source, int e) {
+        checkWritable();
+        int slot = inDeg.get(v);
+        if (slot == inSources.get(v).length) {
+            int capacity = Math.max(4, slot << 1);
+            inSources.set(v, Arrays.copyOf(inSources.get(v), capacity));
+            inEdges.set(v, Arrays.copyOf(inEdges.get(v), capacity));
+            inRowGeneration[v] = generation;
+        }
+        inSources.get(v)[slot] = source;
+        inEdges.get(v)[slot] = e;
+        inDeg.set(v, slot + 1);
+        return slot;
+    }
+
+    /**
+     * Removes a position from the predecessor row of a node by moving the last edge of the row into it
+     * @param v internal index of the node owning the row
+     * @param slot position to be removed
+     */
+    void removeFromInRow(int v, int slot) {
+        checkWritable();
+        ownInRow(v);
+        int last = inDeg.get(v) - 1;
+        inDeg.set(v, last);
+        if (slot != last) {
+            int moved = inEdges.get(v)[last];
+            inSources.get(v)[slot] = inSources.get(v)[last];
+            inEdges.get(v)[slot] = moved;
+            edgeToSlot.set(moved, slot);
+        }
+    }
+
+    /**
+     * Stores a new edge id in the row of its origin and the predecessor row of its destination
+     * @param e id of the edge
+     */
+    void linkEdge(int e) {
+        edgeOutSlot.set(e, appendToRow(edgeFrom.get(e), edgeTo.get(e), e));
+        edgeToSlot.set(e, appendToInRow(edgeTo.get(e), edgeFrom.get(e), e));
+    }
+
+    /**
+     * Removes an edge id from the row of its origin and the predecessor row of its destination
+     * @param e id of the edge
+     */
+    void unlinkEdge(int e) {
+        removeFromRow(edgeFrom.get(e), edgeOutSlot.get(e));
+        removeFromInRow(edgeTo.get(e), edgeToSlot.get(e));
+    }
+
+    /**
+     * Removes an edge id from the rows of those of its nodes which are not being removed, the rows of the removed
+     * nodes are dropped as a whole
+     * @param e id of the edge
+     * @param removed removed[u] is true if the node of internal index u is being removed
+     */
+    void unlinkEdge(int e, boolean[] removed) {
+        if (!removed[edgeFrom.get(e)]) removeFromRow(edgeFrom.get(e), edgeOutSlot.get(e));
+        if (!removed[edgeTo.get(e)]) removeFromInRow(edgeTo.get(e), edgeToSlot.get(e));
+    }
+
+    /**
+     * Creates an edge between two internal indexes
+     * @return the id of the edge
+     */
+    int newEdge(int u, int v, int weight, String label) {
+        checkWritable();
+        int e;
+        if (nbFreeEdges > 0) {
+            e = freeEdges[--nbFreeEdges];
+        } else {
+            growEdges(edgeBound + 1);
+            e = edgeBound++;
+        }
+        edgeFrom.set(e, u);
+        edgeTo.set(e, v);
+        edgeWeight.set(e, weight);
+        edgeLabel.set(e, labels.encode(label));
+        linkEdge(e);
+        long key = pairKey(u, v);
+        edgeNextSame[e] = edgeIndex.get(key);
+        edgeIndex.put(key, e);
+        nbEdges++;
+        return e;
+    }
+
+    /**
+     * Deletes an edge from the rows and frees its id
+     * @param e id of the edge
+     */
+    void deleteEdge(int e) {
+        unlinkEdge(e);
+        forgetEdge(e);
+    }
+
+    /**
+     * Removes an edge from the edge index and frees its id, once it is unlinked from the rows
+     * @param e id of the edge
+     */
+    void forgetEdge(int e) {
+        checkWritable();
+        long key = pairKey(edgeFrom.get(e), edgeTo.get(e));
+        int head = edgeIndex.get(key);
+        if (head == e) {
+            if (edgeNextSame[e] == FREE) edgeIndex.remove(key);
+            else edgeIndex.put(key, edgeNextSame[e]);
+        } else {
+            while (edgeNextSame[head] != e) head = edgeNextSame[head];
+            edgeNextSame[head] = edgeNextSame[e];
+        }
+        edgeFrom.set(e, FREE);
+        if (nbFreeEdges == freeEdges.length) freeEdges = Arrays.copyOf(freeEdges, nbFreeEdges << 1);
+        freeEdges[nbFreeEdges++] = e;
+        nbEdges--;
+    }
+
+    /**
+     * Packs the internal indexes of the two nodes of an edge into the key of the edge index,
+     * overridden by graphs whose edges have no direction
+     */
+    long pairKey(int u, int v) {
+        return ((long) u << 32) | (v & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Searches an edge from one internal index to another in the edge index
+     * @return the id of the edge, or FREE if there is none
+     */
+    int findEdge(int u, int v) {
+        if (edgeIndex == null) {
+            //a snapshot has no edge index, the row of u holds all the edges leaving it
+            for (int k = 0; k < outDeg.get(u); k++) {
+                if (outTargets.get(u)[k] == v) return outEdges.get(u)[k];
+            }
+            return FREE;
         }
+        return edgeIndex.get(pairKey(u, v));
     }
 
+    /**
+     * Builds an Edge object from an edge id
+     */
+    Edge toEdge(int e) {
+        return new Edge(registry.nodeAt(edgeFrom.get(e)), registry.nodeAt(edgeTo.get(e)), edgeWeight.get(e), labels.decode(edgeLabel.get(e)));
+    }
+
+    /**
+     * Inserts an edge between two node ids, adds the nodes to the graph if needed
+     * @return the id of the edge
+     */
+    int insertEdge(int from_id, int to_id, int weight, String label) {
+        int u = indexOrAdd(from_id);
+        int v = indexOrAdd(to_id);
+        return newEdge(u, v, weight, label);
+    }
+
+    /**
+     * Gets a list of all the edges in the graph, the list is a copy and modifying it does not modify the graph
+     * @return a list of all the edges in the graph
+     */
     public List<Edge> getEdgeList() {
-        return edgeList;
+        List<Edge> edges = new ArrayList<>(nbEdges);
+        for (int e = 0; e < edgeBound; e++) {
+            if (edgeFrom.get(e) != FREE) edges.add(toEdge(e));
+        }
+        return edges;
     }
 
+    /**
+     * Gets the graph in the adjacency list formalism, the map is a copy and modifying it does not modify the graph
+     * @return a map from each node to the list of its successors
+     */
     public TreeMap<Node, List<Node>> getAdjList() {
+        TreeMap<Node, List<Node>> adjList = new TreeMap<>();
+        for (int u : sortedIndexes()) {
+            adjList.put(registry.nodeAt(u), getSuccessors(registry.idAt(u)));
+        }
         return adjList;
     }
 
     /**
-     * Adds a node to the graph
+     * Adds a node to the graph, if the node already exists its edges leaving it are removed
      * @param n node to be added
      */
     public void addNode(Node n) {
-        adjList.put(n, new ArrayList<>());
+        int u = indexOf(n.getId());
+        if (u == FREE) {
+            registerNode(n);
+        } else {
+            while (outDeg.get(u) > 0) deleteEdge(outEdges.get(u)[outDeg.get(u) -1]);
+        }
     }
 
     /**
-     * Adds a node to the graph, creates it from the id parameter
+     * Adds a node to the graph, creates it from the id parameter, if the node already exists its edges leaving it are removed
      * @param id number of the node to be added
      */
     public void addNode(int id) {
-        adjList.put(new Node(id), new ArrayList<>());
+        int u = indexOf(id);
+        if (u == FREE) {
+            registerNode(new Node(id));
+        } else {
+            while (outDeg.get(u) > 0) deleteEdge(outEdges.get(u)[outDeg.get(u) -1]);
+        }
+    }
+
+    /**
+     * Adds a node with a new id to the graph, bigger than every id the graph has contained
+     * @return the node added
+     */
+    public Node addNode() {
+        Node n = new Node(registry.allocateId());
+        registerNode(n);
+        return n;
     }
 
     /**
-     * Gets a node in the graph from its int id
+     * Gets a node in the graph from its int id, the same Node object is returned for each call
      * @param id the int id representing the node
      * @return the node found or null if not
      */
     public Node getNode(int id) {
-        Node n = new Node(id);
-        if (adjList.containsKey(n)) return n;
+        int u = indexOf(id);
+        if (u != FREE) return registry.nodeAt(u);
         else return null;
     }
 
     /**
      * Gets the list of all the successors of a node n in the graph, as in the nodes with an edge from n
      * @param n node whose successors we want
-     * @return the list of successors
+     * @return the list of successors, or null if the graph does not contain the node
      */
     public List<Node> getSuccessors(Node n) {
-        return adjList.get(n);
+        return getSuccessors(n.getId());
     }
 
     /**
      * Gets the list of all the successors of a node n in the graph (from an int id), as in the nodes with an edge from n
      * @param id int representing the node whose successors we want
-     * @return the list of successors
+     * @return the list of successors, or null if the graph does not contain the node
      */
     public List<Node> getSuccessors(int id) {
-        return adjList.get(new Node(id));
+        int u = indexOf(id);
+        if (u == FREE) return null;
+        List<Node> successors = new ArrayList<>(outDeg.get(u));
+        for (int k = 0; k < outDeg.get(u); k++) {
+            successors.add(registry.nodeAt(outTargets.get(u)[k]));
+        }
+        return successors;
+    }
+
+    /**
+     * Gets the ids of all the successors of a node, without creating any Node
+     * @param id int representing the node whose successors we want
+     * @return an int array of the successor ids, or null if the graph does not contain the node
+     */
+    public int[] getSuccessorIds(int id) {
+        int u = indexOf(id);
+        if (u == FREE) return null;
+        int[] successors = new int[outDeg.get(u)];
+        for (int k = 0; k < outDeg.get(u); k++) {
+            successors[k] = registry.idAt(outTargets.get(u)[k]);
+        }
+        return successors;
+    }
+
+    /**
+     * Gets the ids of all the predecessors of a node, as in the nodes with an edge to it
+     * @param id int representing the node whose predecessors we want
+     * @return an int array of the predecessor ids, or null if the graph does not contain the node
+     */
+    public int[] getPredecessorIds(int id) {
+        int u = indexOf(id);
+        if (u == FREE) return null;
+        int[] predecessors = new int[inDeg.get(u)];
+        for (int k = 0; k < inDeg.get(u); k++) {
+            predecessors[k] = registry.idAt(inSources.get(u)[k]);
+        }
+        return predecessors;
+    }
+
+    /**
+     * Applies an action on the id of each successor of a node, without allocating anything
+     * @param id int representing the node whose successors we want
+     * @param action the action applied on each successor id
+     */
+    public void forEachSuccessor(int id, IntConsumer action) {
+        int u = indexOf(id);
+        if (u == FREE) return;
+        for (int k = 0; k < outDeg.get(u); k++) {
+            action.accept(registry.idAt(outTargets.get(u)[k]));
+        }
     }
 
     /**
      * Gets the number of nodes in the graph
-     * @return the
+     * @return the number of nodes in the graph
      */
-    public int nbNodes() { return adjList.keySet().size(); }
+    public int nbNodes() { return registry.size(); }
 
     /**
      * Tests if the graph contains a node
@@ -136,7 +656,7 @@ public class Graf {
      * @return true if the graph contains the node, false if not
      */
     public boolean existsNode(Node n) {
-        return adjList.containsKey(n);
+        return existsNode(n.getId());
     }
 
     /**
@@ -145,7 +665,7 @@ public class Graf {
      * @return true if the graph contains the node, false if not
      */
     public boolean existsNode(int id) {
-        return adjList.containsKey(new Node(id));
+        return indexOf(id) != FREE;
     }
 
     /**
@@ -153,22 +673,58 @@ public class Graf {
      * @param id int id representing the node to be removed
      */
     public void removeNode(int id) {
-        Set<Edge> toDelete = new HashSet<>();
-        for (Edge e : edgeList) {
-            if (e.getTo().getId() == id || e.getFrom().getId() == id) {
-                toDelete.add(e);
+        int u = indexOf(id);
+        if (u == FREE) return;
+        while (outDeg.get(u) > 0) deleteEdge(outEdges.get(u)[outDeg.get(u) -1]);
+        removeInEdges(u);
+        freeNode(u);
+    }
+
+    /**
+     * Removes several nodes from the graph in a single pass : each edge incident to a removed node is deleted once,
+     * only the rows of the remaining nodes are updated, ids of nodes not in the graph are ignored
+     * @param ids int ids representing the nodes to be removed
+     */
+    public void removeNodes(int... ids) {
+        checkWritable();
+        boolean[] removed = new boolean[nodeBound()];
+        int[] indexes = new int[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            int u = indexOf(id);
+            if (u != FREE && !removed[u]) {
+                removed[u] = true;
+                indexes[count++] = u;
             }
         }
-        //Must created a second iteration to avoid ConcurrentModificationException
-        for (Edge e : toDelete) {
-            removeEdge(e);
+        for (int i = 0; i < count; i++) {
+            int u = indexes[i];
+            //the rows of u are not modified while they are read, an edge already deleted from the other side is skipped
+            for (int k = 0; k < outDeg.get(u); k++) {
+                int e = outEdges.get(u)[k];
+                if (edgeFrom.get(e) == FREE) continue;
+                unlinkEdge(e, removed);
+                forgetEdge(e);
+            }
+            for (int k = 0; k < inDeg.get(u); k++) {
+                int e = inEdges.get(u)[k];
+                if (edgeFrom.get(e) == FREE) continue;
+                unlinkEdge(e, removed);
+                forgetEdge(e);
+            }
+            checkWritable();
+            outDeg.set(u, 0);
+            inDeg.set(u, 0);
+            freeNode(u);
         }
+    }
 
-        adjList.remove(new Node(id));
-
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-            entry.getValue().remove(new Node(id));
-        }
+    /**
+     * Deletes all the edges coming to a node
+     * @param u internal index of the node
+     */
+    void removeInEdges(int u) {
+        while (inDeg.get(u) > 0) deleteEdge(inEdges.get(u)[inDeg.get(u) -1]);
     }
 
     /**
@@ -186,7 +742,7 @@ public class Graf {
      * @return true if the nodes are adjacent, false if not
      */
     public boolean adjacent(Node u, Node v) {
-        return adjList.get(u).contains(v) || adjList.get(v).contains(u);
+        return adjacent(u.getId(), v.getId());
     }
 
     /**
@@ -196,7 +752,10 @@ public class Graf {
      * @return true if the nodes are adjacent, false if not
      */
     public boolean adjacent(int u_id, int v_id) {
-        return getSuccessors(new Node(u_id)).contains(new Node(v_id)) || getSuccessors(new Node(v_id)).contains(new Node(u_id));
+        int u = indexOf(u_id);
+        int v = indexOf(v_id);
+        if (u == FREE || v == FREE) return false;
+        return findEdge(u, v) != FREE || findEdge(v, u) != FREE;
     }
 
     /**
@@ -204,15 +763,18 @@ public class Graf {
      * @return a List of all the nodes in the graph
      */
     public List<Node> getAllNodes() {
-        Set<Node> keys = adjList.keySet();
-        return new ArrayList<>(keys);
+        List<Node> nodes = new ArrayList<>(nbNodes());
+        for (int u : sortedIndexes()) {
+            nodes.add(registry.nodeAt(u));
+        }
+        return nodes;
     }
 
     /**
      * Gets the total number of edges in the graph
-     * @returnthe total number of edges in the graph
+     * @return the total number of edges in the graph
      */
-    public int nbEdges() { return edgeList.size(); }
+    public int nbEdges() { return nbEdges; }
 
     /**
      * Tests if the graph contains an edge from one node to another
@@ -221,9 +783,7 @@ public class Graf {
      * @return true if there is an edge between the two nodes, false if not
      */
     public boolean existsEdge(Node u, Node v) {
-        if (getNode(u.getId()) == null || getNode(v.getId()) == null) return false;
-
-        return adjacent(u, v);
+        return adjacent(u.getId(), v.getId());
     }
 
     /**
@@ -233,7 +793,6 @@ public class Graf {
      * @return true if there is an edge between the two nodes, false if not
      */
     public boolean existsEdge(int u_id, int v_id) {
-        if (getNode(u_id) == null || getNode(v_id) == null) return false;
         return adjacent(u_id, v_id);
     }
 
@@ -243,9 +802,10 @@ public class Graf {
      * @return true if the graph contains the edge, false if not
      */
     public boolean existsEdge(Edge e) {
-        if (getNode(e.getFrom().getId()) == null || getNode(e.getTo().getId()) == null) return false;
-
-        return edgeList.contains(e);
+        int u = indexOf(e.getFrom().getId());
+        int v = indexOf(e.getTo().getId());
+        if (u == FREE || v == FREE) return false;
+        return findEdge(u, v) != FREE;
     }
 
     /**
@@ -254,10 +814,7 @@ public class Graf {
      * @param to another node
      */
     public void addEdge(Node from, Node to) {
-        if(existsNode(from)) addNode(from);
-        if(existsNode(to)) addNode(to);
-        edgeList.add(new Edge(from, to));
-        getSuccessors(from.getId()).add(to);
+        newEdge(indexOrAdd(from), indexOrAdd(to), 0, null);
     }
 
     /**
@@ -266,22 +823,17 @@ public class Graf {
      * @param to_id int id representing another node
      */
     public void addEdge(int from_id, int to_id) {
-        if(getNode(from_id) == null) addNode(from_id);
-        if(getNode(to_id) == null) addNode(to_id);
-        edgeList.add(new Edge(new Node(from_id), new Node(to_id)));
-        getSuccessors(from_id).add(new Node(to_id));
+        insertEdge(from_id, to_id, 0, null);
     }
 
     /**
      * Adds an edge fromm one node to another, adds the nodes to the graph if needed
      * @param from_id int id representing a node
      * @param to_id int id representing another node
+     * @param weight weight of the edge
      */
     public void addEdge(int from_id, int to_id, int weight) {
-        if(getNode(from_id) == null) addNode(from_id);
-        if(getNode(to_id) == null) addNode(to_id);
-        edgeList.add(new Edge(new Node(from_id), new Node(to_id), weight));
-        getSuccessors(from_id).add(new Node(to_id));
+        insertEdge(from_id, to_id, weight, null);
     }
 
     /**
@@ -289,10 +841,45 @@ public class Graf {
      * @param e edge to be added
      */
     public void addEdge(Edge e) {
-        if(getNode(e.getFrom().getId()) == null) addNode(e.getFrom());
-        if(getNode(e.getTo().getId()) == null) addNode(e.getTo());
-        edgeList.add(e);
-        getSuccessors(e.getFrom().getId()).add(e.getTo());
+        newEdge(indexOrAdd(e.getFrom()), indexOrAdd(e.getTo()), e.getWeight(), e.getLabel());
+    }
+
+    /**
+     * Adds several edges, adds the nodes to the graph if needed, the edge columns are grown once for the whole batch
+     * @param from int ids representing the origins
+     * @param to int ids representing the destinations, to[i] is the destination of the edge from from[i]
+     */
+    public void addEdges(int[] from, int[] to) {
+        addEdges(from, to, null);
+    }
+
+    /**
+     * Adds several weighted edges, adds the nodes to the graph if needed, the edge columns are grown once for the whole batch
+     * @param from int ids representing the origins
+     * @param to int ids representing the destinations, to[i] is the destination of the edge from from[i]
+     * @param weights weights of the edges, or null for unweighted edges
+     */
+    public void addEdges(int[] from, int[] to, int[] weights) {
+        if (from.length != to.length || (weights != null && weights.length != from.length)) {
+            throw new IllegalArgumentException("from, to and weights must have the same length");
+        }
+        //the new edges take the free ids first, then the ids from edgeBound on
+        reserveEdges(edgeBound + Math.max(0, from.length - nbFreeEdges));
+        for (int i = 0; i < from.length; i++) {
+            insertEdge(from[i], to[i], weights == null ? 0 : weights[i], null);
+        }
+    }
+
+    /**
+     * Removes several edges from the graph, does not remove the nodes, pairs which are not an edge are ignored
+     * @param from int ids representing the origins
+     * @param to int ids representing the destinations, to[i] is the destination of the edge from from[i]
+     */
+    public void removeEdges(int[] from, int[] to) {
+        if (from.length != to.length) throw new IllegalArgumentException("from and to must have the same length");
+        for (int i = 0; i < from.length; i++) {
+            removeEdge(from[i], to[i]);
+        }
     }
 
     /**
@@ -301,8 +888,7 @@ public class Graf {
      * @param to another node
      */
     public void removeEdge(Node from, Node to) {
-        getSuccessors(from).remove(to);
-        edgeList.removeIf(e -> e.getFrom() == from && e.getTo() == to);
+        removeEdge(from.getId(), to.getId());
     }
 
     /**
@@ -311,10 +897,11 @@ public class Graf {
      * @param to_id int id representing another node
      */
     public void removeEdge(int from_id, int to_id) {
-        if (getNode(from_id) != null && getNode(to_id) != null) {
-            getSuccessors(from_id).remove(new Node(to_id));
-            edgeList.removeIf(e -> e.getFrom().getId() == from_id && e.getTo().getId() == to_id);
-        }
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        if (u == FREE || v == FREE) return;
+        int e = findEdge(u, v);
+        if (e != FREE) deleteEdge(e);
     }
 
     /**
@@ -322,10 +909,7 @@ public class Graf {
      * @param e edge to be removed
      */
     public void removeEdge(Edge e) {
-        if(getSuccessors(e.getFrom()) != null) {
-            getSuccessors(e.getFrom()).remove(e.getTo());
-            edgeList.remove(e);
-        }
+        removeEdge(e.getFrom().getId(), e.getTo().getId());
     }
 
     /**
@@ -344,10 +928,10 @@ public class Graf {
      */
     public List<Edge> getOutEdges(int id) {
         List<Edge> outEdges = new ArrayList<>();
-        for (Edge e : edgeList) {
-            if (e.getFrom().getId() == id) {
-                outEdges.add(e);
-            }
+        int u = indexOf(id);
+        if (u == FREE) return outEdges;
+        for (int k = 0; k < outDeg.get(u); k++) {
+            outEdges.add(toEdge(this.outEdges.get(u)[k]));
         }
         return outEdges;
     }
@@ -368,10 +952,10 @@ public class Graf {
      */
     public List<Edge> getInEdges(int id) {
         List<Edge> inEdges = new ArrayList<>();
-        for (Edge e : edgeList) {
-            if (e.getTo().getId() == id) {
-                inEdges.add(e);
-            }
+        int u = indexOf(id);
+        if (u == FREE) return inEdges;
+        for (int k = 0; k < inDeg.get(u); k++) {
+            inEdges.add(toEdge(this.inEdges.get(u)[k]));
         }
         return inEdges;
     }
@@ -391,22 +975,100 @@ public class Graf {
      * @return the list of all the edges leaving and coming to the node
      */
     public List<Edge> getIncidentEdges(int id) {
-        List<Edge> incidentEdges = new ArrayList<>();
-        for (Edge e : edgeList) {
-            if (e.getTo().getId() == id || e.getFrom().getId() == id) {
-                incidentEdges.add(e);
-            }
+        List<Edge> incidentEdges = getOutEdges(id);
+        for (Edge e : getInEdges(id)) {
+            //a self loop is both leaving and coming to the node, it is listed once
+            if (e.getFrom().getId() != id) incidentEdges.add(e);
         }
         return incidentEdges;
     }
 
+    /**
+     * Gets the edge from one node to another
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the edge found or null if not
+     */
     public Edge getEdge(int from_id, int to_id) {
-        for (Edge e : edgeList) {
-            if (e.getTo().getId() == to_id && e.getFrom().getId() == from_id) {
-                return e;
-            }
-        }
-        return null;
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        if (u == FREE || v == FREE) return null;
+        int e = findEdge(u, v);
+        return e == FREE ? null : toEdge(e);
+    }
+
+    /**
+     * Gets the id of the edge from one node to another, edge ids are compact and stay valid until the edge is removed
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the id of the edge, or -1 if there is no such edge
+     */
+    public int getEdgeId(int from_id, int to_id) {
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        if (u == FREE || v == FREE) return FREE;
+        return findEdge(u, v);
+    }
+
+    /**
+     * Gets the weight of an edge from its id
+     * @param edgeId id of the edge, as returned by getEdgeId
+     * @return the weight of the edge
+     */
+    public int getEdgeWeight(int edgeId) {
+        return edgeWeight.get(edgeId);
+    }
+
+    /**
+     * Sets the weight of an edge from its id
+     * @param edgeId id of the edge, as returned by getEdgeId
+     * @param weight the new weight of the edge
+     */
+    public void setEdgeWeight(int edgeId, int weight) {
+        checkWritable();
+        edgeWeight.set(edgeId, weight);
+    }
+
+    /**
+     * Gets the label of an edge from its id
+     * @param edgeId id of the edge, as returned by getEdgeId
+     * @return the label of the edge, or null if it has none
+     */
+    public String getEdgeLabel(int edgeId) {
+        return labels.decode(edgeLabel.get(edgeId));
+    }
+
+    /**
+     * Gets the weight of the edge from one node to another
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the weight of the edge, or 0 if the edge has no weight or does not exist
+     */
+    public int getWeight(int from_id, int to_id) {
+        int e = getEdgeId(from_id, to_id);
+        return e == FREE ? 0 : edgeWeight.get(e);
+    }
+
+    /**
+     * Sets the weight of the edge from one node to another, does nothing if there is no such edge
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @param weight the new weight of the edge
+     */
+    public void setWeight(int from_id, int to_id, int weight) {
+        int e = getEdgeId(from_id, to_id);
+        if (e != FREE) setEdgeWeight(e, weight);
+    }
+
+    /**
+     * Gets the label of the edge from one node to another
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the label of the edge, or null if the edge has no label or does not exist
+     */
+    public String getLabel(int from_id, int to_id) {
+        int e = getEdgeId(from_id, to_id);
+        return e == FREE ? null : labels.decode(edgeLabel.get(e));
     }
 
     /**
@@ -414,7 +1076,7 @@ public class Graf {
      * @return a list of all the edges in the graph
      */
     public List<Edge> getAllEdges() {
-        return edgeList;
+        return getEdgeList();
     }
 
     /**
@@ -423,13 +1085,7 @@ public class Graf {
      * @return an int representing the number of edges coming to a node
      */
     public int inDegree(Node n) {
-        int inDegree = 0;
-        for (Edge e : edgeList) {
-            if (e.getTo().getId() == n.getId()) {
-                inDegree++;
-            }
-        }
-        return inDegree;
+        return inDegree(n.getId());
     }
 
     /**
@@ -438,11 +1094,8 @@ public class Graf {
      * @return an int representing the number of edges coming to a node
      */
     public int inDegree(int id) {
-        int inDegree = 0;
-        for (Edge e : edgeList) {
-            if (e.getTo().getId() == id) inDegree++;
-        }
-        return inDegree;
+        int u = indexOf(id);
+        return u == FREE ? 0 : inDeg.get(u);
     }
 
     /**
@@ -451,7 +1104,7 @@ public class Graf {
      * @return an int representing the number of edges leaving a node
      */
     public int outDegree(Node n) {
-        return getSuccessors(n).size();
+        return outDegree(n.getId());
     }
 
     /**
@@ -460,7 +1113,8 @@ public class Graf {
      * @return an int representing the number of edges leaving a node
      */
     public int outDegree(int id) {
-        return getSuccessors(id).size();
+        int u = indexOf(id);
+        return u == FREE ? 0 : outDeg.get(u);
     }
 
     /**
@@ -469,7 +1123,7 @@ public class Graf {
      * @return an int representing the number of edges both leaving and coming to a node
      */
     public int degree(Node n) {
-        return inDegree(n) + outDegree(n);
+        return degree(n.getId());
     }
 
     /**
@@ -481,21 +1135,49 @@ public class Graf {
         return inDegree(id) + outDegree(id);
     }
 
+    /**
+     * Gets the row of a node sorted by successor id, each position packed as successor id << 32 | edge id
+     * @param u internal index of the node
+     */
+    long[] sortedRow(int u) {
+        long[] row = new long[outDeg.get(u)];
+        for (int k = 0; k < outDeg.get(u); k++) {
+            row[k] = ((long) registry.idAt(outTargets.get(u)[k]) << 32) | outEdges.get(u)[k];
+        }
+        Arrays.sort(row);
+        return row;
+    }
+
     /**
      * Builds an int array representing the graph in the Successor Array formalism
      * @return an int array representing the graph in the Successor Array formalism
      */
     public int[] toSuccessorArray() {
-        List<Integer> sa_list = new ArrayList<>();
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-            Collections.sort(entry.getValue());
-            for (Node n : entry.getValue()) {
-                sa_list.add(n.getId());
+        return toSuccessorArray(false);
+    }
+
+    /**
+     * Builds an int array holding the weights of the edges, aligned with the array returned by toSuccessorArray()
+     * @return an int array where the weight of each edge is at the position of its successor in the Successor Array
+     */
+    public int[] toWeightArray() {
+        return toSuccessorArray(true);
+    }
+
+    private int[] toSuccessorArray(boolean weights) {
+        int[] sorted = sortedIndexes();
+        int length = sorted.length;
+        for (int u : sorted) length += outDeg.get(u);
+
+        int[] sa = new int[length];
+        int i = 0;
+        for (int u : sorted) {
+            for (long s : sortedRow(u)) {
+                sa[i++] = weights ? edgeWeight.get((int) s) : (int) (s >> 32);
             }
-            sa_list.add(0);
+            sa[i++] = 0;
         }
-
-        return sa_list.stream().mapToInt(i->i).toArray();
+        return sa;
     }
 
     /**
@@ -504,134 +1186,345 @@ public class Graf {
      */
     public int[][] toAdjMatrix() {
         int[][] adjMatrix = new int[nbNodes()][nbNodes()];
-        for (int[] matrix : adjMatrix) {
-            Arrays.fill(matrix, 0);
-        }
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-            int node_id = entry.getKey().getId();
-            for (Node n : entry.getValue()) {
-                adjMatrix[node_id -1][n.getId() -1] = 1;
+        for (int u : sortedIndexes()) {
+            int node_id = registry.idAt(u);
+            for (int k = 0; k < outDeg.get(u); k++) {
+                adjMatrix[node_id -1][registry.idAt(outTargets.get(u)[k]) -1] = 1;
             }
         }
         return adjMatrix;
     }
 
+    /**
+     * Builds the adjacency matrix of the graph packed as bits, one bit per cell instead of one int,
+     * with rows and columns in increasing id order whatever the ids are
+     * @return a BitMatrix representing the graph in the adjacency matrix formalism
+     * @throws IllegalArgumentException if the graph has too many nodes for a bit matrix
+     */
+    public BitMatrix toBitMatrix() {
+        return BitMatrix.of(this);
+    }
+
+    /**
+     * Builds the adjacency matrix of the graph in the CSR and COO sparse formalisms, weights as values,
+     * 1 for an edge without weight
+     * @return a SparseMatrix with rows and columns in increasing id order
+     */
+    public SparseMatrix toSparseMatrix() {
+        return SparseMatrix.of(freeze());
+    }
+
+    /**
+     * Exports the adjacency matrix of the graph in a Matrix Market coordinate file, weights as values and 1 for an
+     * edge without weight, as in {@link #toSparseMatrix()}.
+     * Entries are written while reading the rows, the matrix is never built in memory
+     * @param matrix file to be written, row and column i+1 stand for the node of the i-th smallest id
+     * @param idFile file where the id of the node of each row is written, one per line, or null
+     * @throws IOException if a file could not be written
+     */
+    public void toMatrixMarketFile(File matrix, File idFile) throws IOException {
+        writeMatrixMarket(matrix, idFile, false);
+    }
+
+    /**
+     * Exports the adjacency matrix in a Matrix Market coordinate file
+     * @param symmetric true to write each edge once, in the lower triangle, for graphs storing an edge in two rows
+     */
+    void writeMatrixMarket(File matrix, File idFile, boolean symmetric) throws IOException {
+        int[] sorted = sortedIndexes();
+        int[] ids = new int[sorted.length];
+        int[] rank = new int[nodeBound()];
+        for (int i = 0; i < sorted.length; i++) {
+            ids[i] = registry.idAt(sorted[i]);
+            rank[sorted[i]] = i;
+        }
+        boolean weighted = false;
+        for (int e = 0; e < edgeBound && !weighted; e++) {
+            weighted = edgeFrom.get(e) != FREE && edgeWeight.get(e) != 0;
+        }
+
+        try (Writer out = new BufferedWriter(new FileWriter(matrix))) {
+            SparseMatrix.writeHeader(out, sorted.length, nbEdges, weighted, symmetric);
+            for (int i = 0; i < sorted.length; i++) {
+                int u = sorted[i];
+                long[] row = sortedRow(u);
+                for (int k = 0; k < row.length; k++) {
+                    int e = (int) row[k];
+                    if (!symmetric) {
+                        SparseMatrix.writeEntry(out, i, rank[edgeTo.get(e)], weighted, matrixValue(e));
+                    } else if (dotListed(u, e) && (k == 0 || row[k -1] != row[k])) {
+                        //the edge is listed from its node with the smallest id, it goes to the lower triangle
+                        int other = edgeFrom.get(e) == u ? edgeTo.get(e) : edgeFrom.get(e);
+                        SparseMatrix.writeEntry(out, rank[other], i, weighted, matrixValue(e));
+                    }
+                }
+            }
+        }
+        if (idFile != null) SparseMatrix.writeIds(idFile, ids);
+    }
+
+    /**
+     * Gets the value of an edge in the adjacency matrix : its weight, or 1 for an edge without weight,
+     * the value SparseMatrix gives it and the cost the shortest path searches give it
+     */
+    private int matrixValue(int e) {
+        int weight = edgeWeight.get(e);
+        return weight == 0 ? 1 : weight;
+    }
+
     /**
      * Builds a two-dimensional int array representing the graph in the adjacency matrix formalism, reversed
      * @return a two-dimensional int array representing the graph in the adjacency matrix formalism, reversed
      */
     public Graf getReverse() {
         Graf reverse = new Graf();
-        for(Node n : getAllNodes()) {
-            reverse.addNode(n);
+        for (int u : sortedIndexes()) {
+            reverse.addNode(registry.nodeAt(u));
         }
-
-        List<Node> success;
-        for(Node n : this.getAllNodes()) {
-            success = this.getSuccessors(n);
-            for (Node s: success) {
-                reverse.addEdge(s.getId(), n.getId());
+        for (int e = 0; e < edgeBound; e++) {
+            if (edgeFrom.get(e) != FREE) {
+                reverse.insertEdge(registry.idAt(edgeTo.get(e)), registry.idAt(edgeFrom.get(e)), edgeWeight.get(e), labels.decode(edgeLabel.get(e)));
             }
         }
         return reverse;
     }
 
     /**
-     * Builds a copy of the graph where all currently mutually reachable nodes have a direct edge between them
-     * @return a copy of the graph where all currently mutually reachable nodes have a direct edge between them
+     * Builds the transitive closure of the graph : a copy of the graph with one edge from each node to every node it
+     * reaches through a path, a node having a loop if it lies on a cycle. Weights and labels are not kept
+     * @return a new graph with an edge for each pair of nodes joined by a path
      */
     public Graf getTransitiveClosure() {
-        Graf g = new Graf(this.toSuccessorArray());
-        List<Node> nodes = getAllNodes();
-        for (Node u : nodes) {
-            List<Node> predecessors = new ArrayList<>();
-            for (Edge e: getInEdges(u)) {
-                predecessors.add(e.getFrom());
-            }
+        return TransitiveClosure.toGraf(getTransitiveClosureMatrix(), true);
+    }
 
-            for (Node p : predecessors) {
-                for (Node s : getSuccessors(u)) {
-                    g.addEdge(p.getId(), s.getId());
-                }
-            }
-        }
-        return g;
+    /**
+     * Computes the transitive closure of the graph as a bit matrix, without building any Edge, see {@link TransitiveClosure}
+     * @return a BitMatrix where (u, v) is set if there is a path from u to v, rows and columns in increasing id order
+     * @throws IllegalArgumentException if the graph has too many nodes for a bit matrix
+     */
+    public BitMatrix getTransitiveClosureMatrix() {
+        return TransitiveClosure.of(freeze());
+    }
+
+    /**
+     * Takes a read-only point-in-time view of the graph. The view shares the pages of the node and edge arrays of the
+     * graph and copies their directories only, in time proportional to (V + E) / 4096. After the snapshot, the first
+     * modification of a page of an array copies that page (4096 entries), and the first removal from a row copies
+     * that row, so an edge addition or removal costs a few page copies instead of a copy of the whole graph.
+     * The first node addition or removal after the snapshot copies the node registry, in O(V).
+     * Traversals and algorithms can run on the view
+     * in other threads while this graph keeps being modified, the view being handed to them by the modifying thread.
+     * Every method modifying the view throws an UnsupportedOperationException
+     * @return a snapshot of the current nodes and edges of the graph
+     */
+    public Graf snapshot() {
+        if (readOnly) return this;
+        Graf view = emptyGraf();
+        view.readOnly = true;
+        view.registry = registry.share();
+        view.labels = labels.share();
+        view.outDeg = outDeg.share();
+        view.outTargets = outTargets.share();
+        view.outEdges = outEdges.share();
+        view.inDeg = inDeg.share();
+        view.inSources = inSources.share();
+        view.inEdges = inEdges.share();
+        view.edgeFrom = edgeFrom.share();
+        view.edgeTo = edgeTo.share();
+        view.edgeWeight = edgeWeight.share();
+        view.edgeLabel = edgeLabel.share();
+        view.edgeOutSlot = edgeOutSlot.share();
+        view.edgeToSlot = edgeToSlot.share();
+        view.edgeIndex = null;
+        view.edgeNextSame = null;
+        view.edgeBound = edgeBound;
+        view.nbEdges = nbEdges;
+        generation++;
+        return view;
+    }
+
+    /**
+     * Tells if the graph is a snapshot, which cannot be modified
+     * @return true for a snapshot, false if not
+     */
+    public boolean isSnapshot() {
+        return readOnly;
+    }
+
+    /**
+     * Builds an empty graph of the same kind, to hold a snapshot
+     */
+    Graf emptyGraf() {
+        return new Graf();
+    }
+
+    /**
+     * Builds an immutable compressed sparse row snapshot of the graph, for read-heavy workloads.
+     * The snapshot is kept until the graph is modified, so the next calls return the same one
+     * @return a FrozenGraf holding the current nodes and edges of the graph
+     */
+    public FrozenGraf freeze() {
+        return freeze(true);
+    }
+
+    /**
+     * Gets the compressed sparse row snapshot of the graph, built if the graph was modified since the last one
+     * @param directed false if the adjacency of the graph is symmetric
+     */
+    FrozenGraf freeze(boolean directed) {
+        FrozenGraf f = frozen;
+        if (f == null) frozen = f = FrozenGraf.of(this, directed);
+        return f;
     }
 
     public enum color{WHITE, GREY, BLACK}
 
     /**
-     * Computes a breadth-first-search of the graph
+     * Computes a breadth-first-search of the graph, starting from the node with the smallest id
      * @return a list of nodes representing a breadth-first-search of the graph in order
      */
     public List<Node> getBFS() {
-        List<Node> bfs = new ArrayList<>();
-        Map<Node, Integer> index = new HashMap<>();
-        color[] color = new color[adjList.size()];
-
-        int cpt = 0;
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-            index.put(entry.getKey(), cpt);
-            color[cpt] = Graf.color.WHITE;
-            cpt++;
-        }
-
-        color[0] = Graf.color.GREY;
-        //PriorityQueue doesn't conserve the order : use Linked instead
-        LinkedBlockingQueue<Node> queue = new LinkedBlockingQueue<>();
-        queue.add(new Node(1));
-
-        while (!queue.isEmpty()) {
-            Node u = queue.poll();
-            for (Node n : getSuccessors(u)) {
-                if (color[index.get(n)] == Graf.color.WHITE) {
-                    color[index.get(n)] = Graf.color.GREY;
-                    queue.add(n);
-                }
-            }
-            color[index.get(u)] = Graf.color.BLACK;
-            bfs.add(u);
-        }
+        return new Listing().bfs();
+    }
+
+    /**
+     * Starts a lazy breadth-first traversal of the graph from a node, see {@link Traversal}
+     * @param source_id int id representing the node the traversal starts from
+     * @return an iterator over the ids of the nodes, by increasing distance from the source
+     * @throws IllegalArgumentException if the graph does not contain the node
+     */
+    public Traversal bfsFrom(int source_id) {
+        return new Traversal(this, traversalSource(source_id), false);
+    }
+
+    /**
+     * Starts a lazy depth-first traversal of the graph from a node, see {@link Traversal}
+     * @param source_id int id representing the node the traversal starts from
+     * @return an iterator over the ids of the nodes, in depth-first pre-order
+     * @throws IllegalArgumentException if the graph does not contain the node
+     */
+    public Traversal dfsFrom(int source_id) {
+        return new Traversal(this, traversalSource(source_id), true);
+    }
+
+    private int traversalSource(int source_id) {
+        int u = registry.indexOf(source_id);
+        if (u == FREE) throw new IllegalArgumentException("The graph does not contain the node " + source_id);
+        return u;
+    }
+
+    /**
+     * Computes a breadth-first-search of the graph from any nodes, with the distances and parents of all the nodes,
+     * on all the cores, see {@link BreadthFirstSearch}
+     * @param source_ids ids of the nodes the search starts from
+     * @return the distances and the parents of the nodes, as int arrays
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public BreadthFirstSearch breadthFirstSearch(int... source_ids) {
+        return BreadthFirstSearch.from(freeze(), source_ids);
+    }
+
+    /**
+     * Computes the distances from several sources to all the nodes, sharing each scan of a row between up to 64
+     * sources, see {@link MultiSourceBFS}
+     * @param source_ids ids of the sources
+     * @return a matrix where [i][v] is the distance from the i-th source to the node of the v-th smallest id,
+     * -1 if it does not reach it
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public int[][] distancesFrom(int... source_ids) {
+        return MultiSourceBFS.distances(freeze(), source_ids);
+    }
+
+    /**
+     * Computes the shortest paths from some nodes to all the nodes, with the weights of the edges, see {@link ShortestPaths}
+     * @param source_ids ids of the nodes the paths start from
+     * @return the distances and the parents of the nodes, as primitive arrays
+     * @throws IllegalArgumentException if the graph does not contain one of the sources or has a negative weight
+     */
+    public ShortestPaths shortestPathsFrom(int... source_ids) {
+        return ShortestPaths.from(freeze(), source_ids);
+    }
+
+    /**
+     * Finds a shortest path between two nodes, with the weights of the edges, searching from both ends at once
+     * @param from_id int id of the origin
+     * @param to_id int id of the destination
+     * @return the path, which does not exist if the destination cannot be reached
+     * @throws IllegalArgumentException if the graph does not contain one of the nodes or has a negative weight
+     */
+    public Route shortestPath(int from_id, int to_id) {
+        return ShortestPaths.between(freeze(), from_id, to_id);
+    }
+
+    /**
+     * Builds an index answering shortest path queries between two nodes with landmarks, see {@link LandmarkIndex}
+     * @param nbLandmarks number of landmarks whose distance tables are computed
+     * @return the index, which does not follow the later changes of the graph
+     * @throws IllegalArgumentException if the number of landmarks is negative or the graph has a negative weight
+     */
+    public LandmarkIndex landmarkIndex(int nbLandmarks) {
+        return new LandmarkIndex(freeze(), nbLandmarks);
+    }
 
-        return bfs;
+    /**
+     * Computes the distances between all the pairs of nodes, with the weights of the edges, see {@link AllPairsShortestPaths}
+     * @param paths true to keep the predecessors of the nodes, to rebuild the paths
+     * @return the distance matrix
+     * @throws IllegalArgumentException if the graph has a negative weight or is too large for a distance matrix
+     */
+    public AllPairsShortestPaths allPairsShortestPaths(boolean paths) {
+        return AllPairsShortestPaths.of(freeze(), paths);
+    }
+
+    /**
+     * Finds the strongly connected components of the graph, see {@link StronglyConnectedComponents}
+     * @param parallel true to find them on all the cores, false to run the Tarjan algorithm in the calling thread
+     * @return the components, numbered in a reverse topological order of the condensed graph, which do not follow the later changes of the graph
+     */
+    public StronglyConnectedComponents stronglyConnectedComponents(boolean parallel) {
+        return StronglyConnectedComponents.of(freeze(), parallel);
     }
 
     /**
-     * Computes a depth-first-search of the graph
+     * Sorts the nodes in a topological order, grouped by the length of the longest path ending at them, see {@link TopologicalOrder}
+     * @return the order and the levels of the nodes, which do not follow the later changes of the graph, without the nodes on a cycle or reached from one
+     */
+    public TopologicalOrder topologicalOrder() {
+        return TopologicalOrder.of(freeze());
+    }
+
+    /**
+     * Computes a depth-first-search of the graph, nodes are listed when they are finished
      * @return a list of nodes representing a depth-first-search of the graph in order
      */
     public List<Node> getDFS() {
-        List<Node> dfs = new ArrayList<>();
-        Map<Node, Integer> index = new HashMap<>();
-        color[] color = new color[adjList.size()];
-
-        int cpt = 0;
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-            index.put(entry.getKey(), cpt);
-            color[cpt] = Graf.color.WHITE;
-            cpt++;
-        }
+        return new Listing().dfs();
+    }
 
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-            if (color[index.get(entry.getKey())] == Graf.color.WHITE) {
-                dfs_visit(dfs, entry.getKey(), color, index);
-            }
-        }
-        return dfs;
+    /**
+     * Reads the rows of the graph for getBFS() and getDFS(), successors being explored in the order of the rows
+     */
+    private final class Listing extends NodeListing {
+        private final int[] sorted = sortedIndexes();
+
+        int bound() { return nodeBound(); }
+        int nbNodes() { return sorted.length; }
+        int root(int i) { return sorted[i]; }
+        int rowStart(int u) { return 0; }
+        int rowEnd(int u) { return outDeg.get(u); }
+        int target(int u, int k) { return outTargets.get(u)[k]; }
+        Node node(int u) { return registry.nodeAt(u); }
     }
 
     /**
-     * Recursively searches (depth-first) from a node
+     * Computes a depth-first-search of the whole graph with the pre-order, post-order, discovery and finish times of the
+     * nodes and the class of every edge, see {@link DepthFirstSearch}
+     * @return the orders, times, parents and edge classes of the search, as int arrays
      */
-    private void dfs_visit(List<Node> dfs, Node u, color[] color, Map<Node, Integer> index) {
-        color[index.get(u)] = Graf.color.GREY;
-        for (Node v : getSuccessors(u)) {
-            if (color[index.get(v)] == Graf.color.WHITE) {
-                dfs_visit(dfs, v, color, index);
-            }
-        }
-        color[index.get(u)] = Graf.color.BLACK;
-        dfs.add(u);
+    public DepthFirstSearch depthFirstSearch() {
+        return DepthFirstSearch.of(freeze());
     }
 
     /**
@@ -639,26 +1532,61 @@ public class Graf {
      * @return a String representing the graph in the DOT formalism
      */
     public String toDotString() {
-        //TreeMap<Node, List<Node>> sorted = new TreeMap<>(adjList);
-
-        StringBuilder dot = new StringBuilder("digraph {\n");
-        //for (Map.Entry<Node, List<Node>> entry : sorted.entrySet()) {
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-                dot.append("\t").append(entry.getKey().getId());
-            if(!entry.getValue().isEmpty()) dot.append(" -> ");
-            Collections.sort(entry.getValue());
-            for (Node n : entry.getValue()) {
-                dot.append(n.getId()).append(", ");
+        return toDotString("digraph", " -> ");
+    }
+
+    /**
+     * Returns a String representing the graph in the DOT formalism
+     * @param kind "digraph" or "graph"
+     * @param link the edge operator, " -> " or " -- "
+     */
+    String toDotString(String kind, String link) {
+        StringBuilder dot = new StringBuilder(kind).append(" {\n");
+        StringBuilder plain = new StringBuilder();
+        StringBuilder attributed = new StringBuilder();
+        for (int u : sortedIndexes()) {
+            int id = registry.idAt(u);
+            long[] row = sortedRow(u);
+            for (int k = 0; k < row.length; k++) {
+                int e = (int) row[k];
+                //an edge stored twice in the same row (undirected self loop) is written once
+                if (!dotListed(u, e) || (k > 0 && row[k -1] == row[k])) continue;
+                if (edgeWeight.get(e) == 0 && edgeLabel.get(e) == LabelDictionary.NO_LABEL) {
+                    plain.append(", ").append(row[k] >> 32);
+                } else {
+                    attributed.append("\t").append(id).append(link).append(row[k] >> 32).append(" [");
+                    if (edgeLabel.get(e) != LabelDictionary.NO_LABEL) {
+                        String label = labels.decode(edgeLabel.get(e)).replace("\\", "\\\\").replace("\"", "\\\"");
+                        attributed.append("label=\"").append(label).append("\"");
+                        if (edgeWeight.get(e) != 0) attributed.append(", ");
+                    }
+                    if (edgeWeight.get(e) != 0) attributed.append("weight=").append(edgeWeight.get(e));
+                    attributed.append("];\n");
+                }
             }
-            if (dot.charAt(dot.length() -1) == ' ') {
-                dot.setLength(dot.length() -2);
+            //edges without attributes are grouped on the line of the node, as "u -> v, w;"
+            if (plain.length() > 0 || attributed.length() == 0) {
+                dot.append("\t").append(id);
+                if (plain.length() > 0) dot.append(link).append(plain, 2, plain.length());
+                dot.append(";\n");
             }
-            dot.append(";\n");
+            dot.append(attributed);
+            plain.setLength(0);
+            attributed.setLength(0);
         }
         dot.append("}");
         return dot.toString();
     }
 
+    /**
+     * Tells if an edge is written in the row of u in the DOT formalism, overridden by graphs storing an edge in two rows
+     * @param u internal index of the node owning the row
+     * @param e id of the edge
+     */
+    boolean dotListed(int u, int e) {
+        return true;
+    }
+
     /**
      * Exports the graph in a .dot file in the DOT formalism
      */
@@ -701,4 +1629,4 @@ public class Graf {
     }
 
 
-}
\ No newline at end of file
+}
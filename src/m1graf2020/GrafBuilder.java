@@ -0,0 +1,463 @@
+package m1graf2020;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Builds a graph from edges given in bulk : the edges are collected in primitive arrays, sorted and de-duplicated
+ * in one pass, then loaded into a Graf, an UndirectedGraf or directly into a FrozenGraf, without any per-edge lookup.
+ * Duplicated edges are merged and the first one added keeps its weight and label. A builder builds a single graph.
+ */
+public final class GrafBuilder {
+    //below this size, the parallel sort does not split the work anymore
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    //an edge is packed as from << 32 | flipped to, flipping the sign bit of to keeps the order of signed ids
+    private long[] keys;
+    private int nbKeys;
+    //weights and label codes of the edges in the order they were added, null until an edge has one
+    private int[] weights;
+    private int[] labelCodes;
+    private final LabelDictionary labels = new LabelDictionary();
+    private int[] nodes = new int[16];
+    private int nbNodes;
+    private boolean parallel;
+    private boolean built;
+
+    public GrafBuilder() {
+        this(16);
+    }
+
+    /**
+     * Builds an empty builder
+     * @param expectedEdges number of edges which will be added, to avoid growing the arrays
+     */
+    public GrafBuilder(int expectedEdges) {
+        keys = new long[Math.max(16, expectedEdges)];
+    }
+
+    /**
+     * Sorts the edges on several threads when building
+     * @param parallel true to sort in parallel, false to sort in the calling thread
+     * @return this builder
+     */
+    public GrafBuilder parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Adds a node, which may have no edge
+     * @param id int id representing the node
+     * @return this builder
+     */
+    public GrafBuilder addNode(int id) {
+        checkNotBuilt();
+        if (nbNodes == nodes.length) nodes = Arrays.copyOf(nodes, nbNodes << 1);
+        nodes[nbNodes++] = id;
+        return this;
+    }
+
+    /**
+     * Adds an edge, its nodes are added if needed
+     * @param from_id int id representing the origin
+     * @param to_id int id representing the destination
+     * @return this builder
+     */
+    public GrafBuilder addEdge(int from_id, int to_id) {
+        return addEdge(from_id, to_id, 0, null);
+    }
+
+    /**
+     * Adds a weighted edge, its nodes are added if needed
+     * @param from_id int id representing the origin
+     * @param to_id int id representing the destination
+     * @param weight weight of the edge
+     * @return this builder
+     */
+    public GrafBuilder addEdge(int from_id, int to_id, int weight) {
+        return addEdge(from_id, to_id, weight, null);
+    }
+
+    /**
+     * Adds an edge with a weight and a label, its nodes are added if needed
+     * @param from_id int id representing the origin
+     * @param to_id int id representing the destination
+     * @param weight weight of the edge, 0 for none
+     * @param label label of the edge, or null
+     * @return this builder
+     */
+    public GrafBuilder addEdge(int from_id, int to_id, int weight, String label) {
+        checkNotBuilt();
+        if (nbKeys == keys.length) {
+            keys = Arrays.copyOf(keys, nbKeys << 1);
+            if (weights != null) weights = Arrays.copyOf(weights, nbKeys << 1);
+            if (labelCodes != null) labelCodes = Arrays.copyOf(labelCodes, nbKeys << 1);
+        }
+        if (weight != 0 && weights == null) weights = new int[keys.length];
+        if (label != null && labelCodes == null) {
+            labelCodes = new int[keys.length];
+            Arrays.fill(labelCodes, LabelDictionary.NO_LABEL);
+        }
+        if (weights != null) weights[nbKeys] = weight;
+        if (labelCodes != null) labelCodes[nbKeys] = labels.encode(label);
+        keys[nbKeys++] = pack(from_id, to_id);
+        return this;
+    }
+
+    /**
+     * Adds edges given as two aligned arrays
+     * @param from int ids of the origins
+     * @param to int ids of the destinations, to[i] is the destination of the edge from from[i]
+     * @return this builder
+     */
+    public GrafBuilder addEdges(int[] from, int[] to) {
+        return addEdges(from, to, null);
+    }
+
+    /**
+     * Adds weighted edges given as three aligned arrays
+     * @param from int ids of the origins
+     * @param to int ids of the destinations, to[i] is the destination of the edge from from[i]
+     * @param weights weights of the edges, or null for unweighted edges
+     * @return this builder
+     */
+    public GrafBuilder addEdges(int[] from, int[] to, int[] weights) {
+        if (from.length != to.length || (weights != null && weights.length != from.length)) {
+            throw new IllegalArgumentException("from, to and weights must have the same length");
+        }
+        checkNotBuilt();
+        if (nbKeys + from.length > keys.length) {
+            int capacity = Math.max(nbKeys + from.length, keys.length << 1);
+            keys = Arrays.copyOf(keys, capacity);
+            if (this.weights != null) this.weights = Arrays.copyOf(this.weights, capacity);
+            if (labelCodes != null) labelCodes = Arrays.copyOf(labelCodes, capacity);
+        }
+        for (int i = 0; i < from.length; i++) {
+            addEdge(from[i], to[i], weights == null ? 0 : weights[i], null);
+        }
+        return this;
+    }
+
+    /**
+     * Adds edges, with their weights and labels
+     * @param edges an iterator over the edges to be added
+     * @return this builder
+     */
+    public GrafBuilder addEdges(Iterator<Edge> edges) {
+        while (edges.hasNext()) {
+            Edge e = edges.next();
+            addEdge(e.getFrom().getId(), e.getTo().getId(), e.getWeight(), e.getLabel());
+        }
+        return this;
+    }
+
+    /**
+     * Adds edges, with their weights and labels
+     * @param edges the edges to be added
+     * @return this builder
+     */
+    public GrafBuilder addEdges(Iterable<Edge> edges) {
+        return addEdges(edges.iterator());
+    }
+
+    /**
+     * Adds the nodes and edges of an int array representing a Successor Array Formalism, as Graf(int...) reads it
+     * @param sa an int array in the Successor Array formalism
+     * @return this builder
+     */
+    public GrafBuilder addSuccessorArray(int... sa) {
+        return addSuccessorArray(Arrays.stream(sa));
+    }
+
+    /**
+     * Adds the nodes and edges of a stream of ints representing a Successor Array Formalism, as Graf(int...) reads it
+     * @param sa an IntStream in the Successor Array formalism, read in order
+     * @return this builder
+     */
+    public GrafBuilder addSuccessorArray(IntStream sa) {
+        //from, and 1 if a 0 was read : the next node is only created if the array goes on, as in Graf(int...)
+        int[] state = {1, 0};
+        addNode(1);
+        sa.sequential().forEachOrdered(value -> {
+            if (state[1] == 1) {
+                addNode(++state[0]);
+                state[1] = 0;
+            }
+            if (value != 0) addEdge(state[0], value);
+            else state[1] = 1;
+        });
+        return this;
+    }
+
+    /**
+     * Builds a directed graph holding the nodes and edges added
+     * @return a new Graf
+     */
+    public Graf build() {
+        Graf g = new Graf();
+        load(g, true);
+        return g;
+    }
+
+    /**
+     * Builds an undirected graph holding the nodes and edges added, the edges u -> v and v -> u being the same edge
+     * @return a new UndirectedGraf
+     */
+    public UndirectedGraf buildUndirected() {
+        UndirectedGraf g = new UndirectedGraf();
+        load(g, false);
+        return g;
+    }
+
+    /**
+     * Builds the compressed sparse row snapshot of the directed graph holding the nodes and edges added,
+     * without building the Graf first
+     * @return a new FrozenGraf
+     */
+    public FrozenGraf buildFrozen() {
+        return freeze(true);
+    }
+
+    /**
+     * Builds the compressed sparse row snapshot of the undirected graph holding the nodes and edges added,
+     * without building the UndirectedGraf first
+     * @return a new FrozenGraf
+     */
+    public FrozenGraf buildFrozenUndirected() {
+        return freeze(false);
+    }
+
+    private void checkNotBuilt() {
+        if (built) throw new IllegalStateException("This builder has already built a graph");
+    }
+
+    private static long pack(int from_id, int to_id) {
+        return ((long) from_id << 32) | ((to_id ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static int from(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int to(long key) {
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Sorts and de-duplicates the edges, then gathers the weights and label codes in the same order
+     * @param directed false to merge the edges u -> v and v -> u, which are then stored with the smallest id first
+     */
+    private void prepare(boolean directed) {
+        checkNotBuilt();
+        built = true;
+        if (!directed) {
+            for (int i = 0; i < nbKeys; i++) {
+                int u = from(keys[i]);
+                int v = to(keys[i]);
+                if (u > v) keys[i] = pack(v, u);
+            }
+        }
+
+        if (weights == null && labelCodes == null) {
+            if (parallel) Arrays.parallelSort(keys, 0, nbKeys);
+            else Arrays.sort(keys, 0, nbKeys);
+            int n = 0;
+            for (int i = 0; i < nbKeys; i++) {
+                if (n == 0 || keys[i] != keys[n -1]) keys[n++] = keys[i];
+            }
+            nbKeys = n;
+            return;
+        }
+
+        //a stable sort of the positions with the keys, so the first edge added is the one kept
+        int[] positions = new int[nbKeys];
+        for (int i = 0; i < nbKeys; i++) positions[i] = i;
+        MergeSort sort = new MergeSort(keys, positions, new long[nbKeys], new int[nbKeys], 0, nbKeys,
+                parallel ? PARALLEL_THRESHOLD : Integer.MAX_VALUE);
+        if (parallel) ForkJoinPool.commonPool().invoke(sort);
+        else sort.compute();
+        int[] sortedWeights = weights == null ? null : new int[nbKeys];
+        int[] sortedLabels = labelCodes == null ? null : new int[nbKeys];
+        int n = 0;
+        for (int i = 0; i < nbKeys; i++) {
+            if (n > 0 && keys[i] == keys[n -1]) continue;
+            keys[n] = keys[i];
+            if (sortedWeights != null) sortedWeights[n] = weights[positions[i]];
+            if (sortedLabels != null) sortedLabels[n] = labelCodes[positions[i]];
+            n++;
+        }
+        nbKeys = n;
+        weights = sortedWeights;
+        labelCodes = sortedLabels;
+    }
+
+    /**
+     * Gets the ids of all the nodes, sorted and unique, once the edges are prepared
+     */
+    private int[] nodeIds() {
+        int[] ids = new int[nbNodes + 2 * nbKeys];
+        System.arraycopy(nodes, 0, ids, 0, nbNodes);
+        int k = nbNodes;
+        for (int i = 0; i < nbKeys; i++) {
+            ids[k++] = from(keys[i]);
+            ids[k++] = to(keys[i]);
+        }
+        if (parallel) Arrays.parallelSort(ids);
+        else Arrays.sort(ids);
+        int n = 0;
+        for (int id : ids) {
+            if (n == 0 || id != ids[n -1]) ids[n++] = id;
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Gets the compact index of the origin or the destination of each edge, once the edges are prepared
+     * @param ids the ids of all the nodes, sorted
+     * @param origins true for the origins, false for the destinations
+     */
+    private int[] ranks(int[] ids, boolean origins) {
+        int[] ranks = new int[nbKeys];
+        int r = 0;
+        for (int i = 0; i < nbKeys; i++) {
+            if (origins) {
+                //the edges are sorted by origin, the origins are found by walking the ids once
+                while (ids[r] != from(keys[i])) r++;
+                ranks[i] = r;
+            } else {
+                ranks[i] = Arrays.binarySearch(ids, to(keys[i]));
+            }
+        }
+        return ranks;
+    }
+
+    private void load(Graf g, boolean directed) {
+        prepare(directed);
+        int[] ids = nodeIds();
+        int[] from = ranks(ids, true);
+        int[] to = ranks(ids, false);
+        int[] index = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) index[i] = g.indexOrAdd(ids[i]);
+
+        //rows are allocated at their final size
+        int[] outCount = new int[ids.length];
+        int[] inCount = new int[ids.length];
+        for (int i = 0; i < nbKeys; i++) {
+            outCount[from[i]]++;
+            inCount[to[i]]++;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (directed) g.reserveRows(index[i], outCount[i], inCount[i]);
+            else g.reserveRows(index[i], outCount[i] + inCount[i], 0);
+        }
+        g.reserveEdges(nbKeys);
+
+        for (int i = 0; i < nbKeys; i++) {
+            g.newEdge(index[from[i]], index[to[i]], weights == null ? 0 : weights[i],
+                    labelCodes == null ? null : labels.decode(labelCodes[i]));
+        }
+    }
+
+    private FrozenGraf freeze(boolean directed) {
+        prepare(directed);
+        int[] ids = nodeIds();
+        int n = ids.length;
+        int[] from = ranks(ids, true);
+        int[] to = ranks(ids, false);
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < nbKeys; i++) {
+            offsets[from[i] + 1]++;
+            if (!directed) offsets[to[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+
+        int[] targets = new int[offsets[n]];
+        int[] frozenWeights = weights == null ? null : new int[offsets[n]];
+        int[] cursor = Arrays.copyOf(offsets, n);
+        //edges are sorted by origin then destination : the rows are filled in order, and for an undirected graph
+        //the mirrored entries of a row (smaller neighbours) all come before its own entries (bigger neighbours)
+        for (int i = 0; i < nbKeys; i++) {
+            if (frozenWeights != null) frozenWeights[cursor[from[i]]] = weights[i];
+            targets[cursor[from[i]]++] = to[i];
+            if (!directed) {
+                if (frozenWeights != null) frozenWeights[cursor[to[i]]] = weights[i];
+                targets[cursor[to[i]]++] = from[i];
+            }
+        }
+        return new FrozenGraf(ids, offsets, targets, frozenWeights, nbKeys, directed);
+    }
+
+    /**
+     * Stable merge sort of packed edges along with an int array, the two halves are sorted in parallel above a threshold
+     */
+    private static final class MergeSort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final long[] keys;
+        private final int[] values;
+        private final long[] keyBuffer;
+        private final int[] valueBuffer;
+        private final int lo;
+        private final int hi;
+        private final int threshold;
+
+        MergeSort(long[] keys, int[] values, long[] keyBuffer, int[] valueBuffer, int lo, int hi, int threshold) {
+            this.keys = keys;
+            this.values = values;
+            this.keyBuffer = keyBuffer;
+            this.valueBuffer = valueBuffer;
+            this.lo = lo;
+            this.hi = hi;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= 32) {
+                insertionSort();
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            MergeSort left = new MergeSort(keys, values, keyBuffer, valueBuffer, lo, mid, threshold);
+            MergeSort right = new MergeSort(keys, values, keyBuffer, valueBuffer, mid, hi, threshold);
+            if (hi - lo > threshold) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            if (keys[mid -1] <= keys[mid]) return;
+            int i = lo;
+            int j = mid;
+            for (int k = lo; k < hi; k++) {
+                if (j == hi || (i < mid && keys[i] <= keys[j])) {
+                    keyBuffer[k] = keys[i];
+                    valueBuffer[k] = values[i++];
+                } else {
+                    keyBuffer[k] = keys[j];
+                    valueBuffer[k] = values[j++];
+                }
+            }
+            System.arraycopy(keyBuffer, lo, keys, lo, hi - lo);
+            System.arraycopy(valueBuffer, lo, values, lo, hi - lo);
+        }
+
+        private void insertionSort() {
+            for (int i = lo + 1; i < hi; i++) {
+                long key = keys[i];
+                int value = values[i];
+                int j = i - 1;
+                while (j >= lo && keys[j] > key) {
+                    keys[j + 1] = keys[j];
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                keys[j + 1] = key;
+                values[j + 1] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package m1graf2020;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of compact node indexes keyed by long priorities, in int and long arrays. The position of every node
+ * in the heap is kept, so the key of a node already in the heap can be decreased in place instead of pushing it again.
+ */
+final class IndexedHeap {
+    private final int[] heap;
+    //position of each node in the heap, -1 if it is not in it
+    private final int[] position;
+    private final long[] keys;
+    private int size;
+
+    /**
+     * Builds an empty heap
+     * @param n number of nodes, the indexes pushed are between 0 and n-1
+     */
+    IndexedHeap(int n) {
+        heap = new int[n];
+        position = new int[n];
+        Arrays.fill(position, -1);
+        keys = new long[n];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int v) {
+        return position[v] >= 0;
+    }
+
+    /**
+     * Gets the smallest key, the heap must not be empty
+     */
+    long minKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Adds a node, or decreases its key if it is already in the heap
+     * @param v index of a node
+     * @param key new key of the node, not greater than its current one
+     */
+    void push(int v, long key) {
+        if (position[v] < 0) {
+            heap[size] = v;
+            position[v] = size++;
+        }
+        keys[v] = key;
+        siftUp(position[v]);
+    }
+
+    /**
+     * Removes the node of smallest key, the heap must not be empty
+     * @return the index of the node
+     */
+    int pop() {
+        int v = heap[0];
+        position[v] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return v;
+    }
+
+    /**
+     * Removes all the nodes, in a time proportional to their number
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) position[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        long key = keys[v];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[heap[parent]] <= key) break;
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        long key = keys[v];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) child++;
+            if (keys[heap[child]] >= key) break;
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+}
@@ -0,0 +1,92 @@
+package m1graf2020;
+
+import java.util.Arrays;
+
+/**
+ * Growable int array stored in pages of PAGE ints, which snapshots share page by page : share() copies the directory
+ * of the pages only, and a page is copied the first time it is written after that, so a write after a snapshot copies
+ * PAGE ints and not the whole array. Growing adds pages without copying the existing ones.
+ * A small array is a single page shorter than PAGE, so that small graphs do not allocate whole pages.
+ */
+final class IntPages {
+    private static final int SHIFT = 12;
+    static final int PAGE = 1 << SHIFT;
+    private static final int MASK = PAGE - 1;
+
+    private int[][] pages;
+    private int nbPages;
+    //number of shares when each page was allocated or copied : a page of an older generation is also read by a view
+    private int[] pageGeneration;
+    private int generation;
+
+    /**
+     * @param capacity number of ints the array holds at first, at most PAGE
+     */
+    IntPages(int capacity) {
+        pages = new int[][] {new int[capacity]};
+        nbPages = 1;
+        pageGeneration = new int[1];
+    }
+
+    private IntPages(int[][] pages, int nbPages) {
+        this.pages = pages;
+        this.nbPages = nbPages;
+        pageGeneration = new int[pages.length];
+        //a view does not own any page, a write to it copies the page instead of modifying the one it shares
+        generation = 1;
+    }
+
+    int get(int i) {
+        return pages[i >>> SHIFT][i & MASK];
+    }
+
+    void set(int i, int value) {
+        int p = i >>> SHIFT;
+        if (pageGeneration[p] != generation) own(p);
+        pages[p][i & MASK] = value;
+    }
+
+    private void own(int p) {
+        pages[p] = pages[p].clone();
+        pageGeneration[p] = generation;
+    }
+
+    /**
+     * Gets the number of ints the array holds, every index lower than it can be read and written
+     */
+    int capacity() {
+        return nbPages == 1 ? pages[0].length : nbPages << SHIFT;
+    }
+
+    /**
+     * Grows the array : the single small page at least doubles until it is a whole page, then pages are added
+     * @param capacity number of ints the array will hold at least
+     */
+    void grow(int capacity) {
+        if (capacity <= capacity()) return;
+        if (nbPages == 1 && pages[0].length < PAGE) {
+            pages[0] = Arrays.copyOf(pages[0], Math.min(PAGE, Math.max(capacity, pages[0].length << 1)));
+            pageGeneration[0] = generation;
+            if (capacity <= PAGE) return;
+        }
+        int count = (int) ((capacity + (long) MASK) >>> SHIFT);
+        if (count > pages.length) {
+            int length = Math.max(count, pages.length << 1);
+            pages = Arrays.copyOf(pages, length);
+            pageGeneration = Arrays.copyOf(pageGeneration, length);
+        }
+        for (; nbPages < count; nbPages++) {
+            pages[nbPages] = new int[PAGE];
+            pageGeneration[nbPages] = generation;
+        }
+    }
+
+    /**
+     * Gets a read-only view of the current values, in time proportional to the number of pages :
+     * this array copies each page the first time it writes to it afterwards
+     */
+    IntPages share() {
+        generation++;
+        return new IntPages(Arrays.copyOf(pages, nbPages), nbPages);
+    }
+}
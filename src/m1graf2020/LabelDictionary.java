@@ -0,0 +1,61 @@
+package m1graf2020;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary encoding of edge labels : each distinct label is stored once and edges only keep its int code.
+ */
+final class LabelDictionary {
+    static final int NO_LABEL = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] labels = new String[16];
+    private int size;
+
+    /**
+     * Gets the code of a label, adds the label to the dictionary if needed
+     * @param label a label, may be null
+     * @return the code of the label, or NO_LABEL if the label is null
+     */
+    int encode(String label) {
+        if (label == null) return NO_LABEL;
+        Integer code = codes.get(label);
+        if (code == null) {
+            code = size;
+            if (code == labels.length) labels = Arrays.copyOf(labels, code << 1);
+            labels[code] = label;
+            codes.put(label, code);
+            size++;
+        }
+        return code;
+    }
+
+    /**
+     * Gets the label of a code
+     * @param code a code returned by encode
+     * @return the label, or null for NO_LABEL
+     */
+    String decode(int code) {
+        return code == NO_LABEL ? null : labels[code];
+    }
+
+    /**
+     * Gets the number of distinct labels
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets a read-only view of the labels encoded so far : labels encoded later are stored after them,
+     * so the view can decode its codes while this dictionary keeps growing
+     */
+    LabelDictionary share() {
+        LabelDictionary view = new LabelDictionary();
+        view.labels = labels;
+        view.size = size;
+        return view;
+    }
+}
@@ -0,0 +1,324 @@
+package m1graf2020;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Index answering point-to-point shortest path queries on a graph which rarely changes, with the A* algorithm,
+ * landmarks and the triangle inequality (ALT). Some nodes are chosen as landmarks, each one far from the landmarks
+ * chosen before, and the distances from every landmark to all the nodes and from all the nodes to every landmark are
+ * computed once, in int arrays. For a landmark L, a node v and a destination t, d(v,t) &gt;= d(v,L) - d(t,L) and
+ * d(v,t) &gt;= d(L,t) - d(L,v), which gives the search a lower bound of the distance left from every node, so that it
+ * settles the nodes towards the destination first, and skips the nodes the tables show cannot reach it.
+ * The tables can be saved in a binary file and loaded back for the same graph.
+ * File layout, every value is a little endian int :
+ * magic, flags (1 = directed, 2 = weighted), nbNodes n, number of stored successors m, nbLandmarks k,
+ * ids of the landmarks[k], k rows of n distances from the landmarks, k rows of n distances to the landmarks if directed.
+ */
+public final class LandmarkIndex {
+    private static final int MAGIC = 0x31544c41;
+    private static final int DIRECTED = 1;
+    private static final int WEIGHTED = 2;
+    private static final int HEADER_INTS = 5;
+    //number of landmarks giving the bounds of a query, the ones giving the best bound at the origin
+    static final int ACTIVE = 4;
+
+    private final FrozenGraf g;
+    //compact indexes of the landmarks
+    private final int[] landmarks;
+    //[i][v] distance from the i-th landmark to the node v, and from the node v to the i-th landmark, -1 if there is no path
+    //the rows are the same in an undirected graph
+    private final int[][] fromLandmarks;
+    private final int[][] toLandmarks;
+    //the searches kept between the queries
+    private final SearchPool<LandmarkSearch> searches = new SearchPool<>(() -> new LandmarkSearch(this));
+
+    /**
+     * Chooses landmarks and computes their distance tables, with one Dijkstra search per landmark and direction.
+     * Each landmark is chosen with the avoid heuristic, from a shortest path tree rooted at the node farthest from the
+     * landmarks already chosen among the nodes they reach, so that isolated nodes are not taken as landmarks
+     * @param g the graph, directed or not, whose weights must not be negative
+     * @param nbLandmarks number of landmarks, more landmarks give better bounds but take more memory;
+     * 0 makes the queries plain Dijkstra searches
+     * @throws IllegalArgumentException if the number of landmarks is negative, the graph has a negative weight,
+     * or a distance does not fit in an int
+     */
+    public LandmarkIndex(FrozenGraf g, int nbLandmarks) {
+        if (nbLandmarks < 0) throw new IllegalArgumentException("The number of landmarks must not be negative");
+        int n = g.nbNodes();
+        int k = Math.min(nbLandmarks, n);
+        this.g = g;
+        landmarks = new int[k];
+        fromLandmarks = new int[k][];
+        toLandmarks = new int[k][];
+        //distance between each node and its closest landmark, in either direction, -1 if no landmark reaches it
+        long[] closest = new long[n];
+        Arrays.fill(closest, -1);
+        boolean[] chosen = new boolean[n];
+        for (int i = 0; i < k; i++) {
+            //the first tree grows from the node of largest degree, which is in a large component
+            int root = 0;
+            for (int v = 0; v < n; v++) {
+                if (i == 0 ? degree(g, v) > degree(g, root) : closest[v] > closest[root]) root = v;
+            }
+            int landmark = avoid(root, i, chosen);
+            if (landmark < 0) {
+                for (int v = 0; v < n; v++) {
+                    if (!chosen[v] && (landmark < 0 || closest[v] > closest[landmark])) landmark = v;
+                }
+            }
+            chosen[landmark] = true;
+            landmarks[i] = landmark;
+            fromLandmarks[i] = table(g, landmark);
+            toLandmarks[i] = g.isDirected() ? table(g.getReverse(), landmark) : fromLandmarks[i];
+            for (int v = 0; v < n; v++) {
+                closest[v] = closer(closer(closest[v], fromLandmarks[i][v]), toLandmarks[i][v]);
+            }
+        }
+    }
+
+    //the smaller of two distances, -1 meaning no path
+    private static long closer(long d1, long d2) {
+        return d1 < 0 || d2 >= 0 && d2 < d1 ? d2 : d1;
+    }
+
+    private static int degree(FrozenGraf g, int v) {
+        return g.offsets()[v + 1] - g.offsets()[v];
+    }
+
+    /**
+     * Chooses a landmark with the avoid heuristic : in a shortest path tree, each node weighs the gap between its
+     * distance from the root and the lower bound given by the landmarks already chosen, and a subtree holding a
+     * landmark weighs nothing. The landmark is the leaf reached by going down from the heaviest subtree, always into
+     * the heaviest child, so it lies behind the nodes whose bounds are the worst
+     * @param root compact index of the root of the tree
+     * @param nbChosen number of landmarks already chosen
+     * @param chosen tells for each compact index if the node is a landmark
+     * @return compact index of the landmark, -1 if every subtree holds a landmark
+     */
+    private int avoid(int root, int nbChosen, boolean[] chosen) {
+        int n = g.nbNodes();
+        ShortestPaths tree = ShortestPaths.from(g, g.idAt(root));
+        long[] distances = tree.getDistances();
+        int[] parents = tree.getParents();
+        //children of each node in the tree, in compressed rows
+        int[] childOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            if (parents[v] >= 0) childOffsets[parents[v] + 1]++;
+        }
+        for (int v = 0; v < n; v++) childOffsets[v + 1] += childOffsets[v];
+        int[] children = new int[childOffsets[n]];
+        int[] cursor = Arrays.copyOf(childOffsets, n);
+        for (int v = 0; v < n; v++) {
+            if (parents[v] >= 0) children[cursor[parents[v]]++] = v;
+        }
+
+        //sizes are summed from the leaves up, a node being done once all its children are, -1 if it holds a landmark
+        long[] sizes = new long[n];
+        int[] pending = new int[n];
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int v = 0; v < n; v++) {
+            pending[v] = childOffsets[v + 1] - childOffsets[v];
+            if (distances[v] >= 0 && pending[v] == 0) queue[tail++] = v;
+        }
+        int heaviest = -1;
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            long bound = 0;
+            for (int i = 0; i < nbChosen; i++) bound = Math.max(bound, bound(i, root, v));
+            long size = chosen[v] ? -1 : distances[v] - bound;
+            for (int c = childOffsets[v]; c < childOffsets[v + 1] && size >= 0; c++) {
+                size = sizes[children[c]] < 0 ? -1 : size + sizes[children[c]];
+            }
+            sizes[v] = size;
+            if (size > 0 && (heaviest < 0 || size > sizes[heaviest])) heaviest = v;
+            if (parents[v] >= 0 && --pending[parents[v]] == 0) queue[tail++] = parents[v];
+        }
+        if (heaviest < 0) return -1;
+        for (int v = heaviest; ; ) {
+            if (childOffsets[v] == childOffsets[v + 1]) return v;
+            int next = children[childOffsets[v]];
+            for (int c = childOffsets[v] + 1; c < childOffsets[v + 1]; c++) {
+                if (sizes[children[c]] > sizes[next]) next = children[c];
+            }
+            v = next;
+        }
+    }
+
+    private LandmarkIndex(FrozenGraf g, int[] landmarks, int[][] fromLandmarks, int[][] toLandmarks) {
+        this.g = g;
+        this.landmarks = landmarks;
+        this.fromLandmarks = fromLandmarks;
+        this.toLandmarks = toLandmarks;
+    }
+
+    /**
+     * Computes the distances from a node to all the nodes
+     * @return the distance to the node of each compact index, -1 if it is not reached
+     */
+    private static int[] table(FrozenGraf g, int source) {
+        long[] distances = ShortestPaths.from(g, g.idAt(source)).getDistances();
+        int[] table = new int[distances.length];
+        for (int v = 0; v < table.length; v++) {
+            if (distances[v] > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The distance from the node " + g.idAt(source) + " to the node "
+                        + g.idAt(v) + " does not fit in an int");
+            }
+            table[v] = (int) distances[v];
+        }
+        return table;
+    }
+
+    /**
+     * Writes the landmarks and their distance tables in a binary file
+     * @param file file to be written
+     * @throws IOException if the file could not be written
+     */
+    public void save(File file) throws IOException {
+        int n = g.nbNodes();
+        int[] ids = new int[landmarks.length];
+        for (int i = 0; i < ids.length; i++) ids[i] = g.idAt(landmarks[i]);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            long position = 0;
+            position = MappedGraf.writeSection(channel, position,
+                    new int[]{MAGIC, flagsOf(g), n, g.targets().length, landmarks.length});
+            position = MappedGraf.writeSection(channel, position, ids);
+            for (int[] row : fromLandmarks) position = MappedGraf.writeSection(channel, position, row);
+            if (g.isDirected()) {
+                for (int[] row : toLandmarks) position = MappedGraf.writeSection(channel, position, row);
+            }
+            raf.setLength(position);
+        }
+    }
+
+    /**
+     * Reads the landmarks and their distance tables from a binary file, without computing any distance
+     * @param g the graph the file was written for, or a copy of it
+     * @param file file written by {@link #save(File)}
+     * @return the index
+     * @throws IOException if the file could not be read, is not a landmark file, or was written for another graph
+     */
+    public static LandmarkIndex load(FrozenGraf g, File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_INTS * Integer.BYTES) throw new IOException("File is not a landmark file");
+            IntBuffer header = MappedGraf.mapSection(channel, 0, HEADER_INTS);
+            if (header.get(0) != MAGIC) throw new IOException("File is not a landmark file");
+            int n = header.get(2);
+            int k = header.get(4);
+            if (header.get(1) != flagsOf(g) || n != g.nbNodes() || header.get(3) != g.targets().length || k < 0) {
+                throw new IOException("Landmark file was written for another graph");
+            }
+            long expected = HEADER_INTS + k + (long) k * n * (g.isDirected() ? 2 : 1);
+            if (channel.size() != expected * Integer.BYTES) throw new IOException("Landmark file is truncated");
+
+            long position = HEADER_INTS * Integer.BYTES;
+            int[] landmarks = new int[k];
+            MappedGraf.mapSection(channel, position, k).get(landmarks);
+            position += (long) k * Integer.BYTES;
+            for (int i = 0; i < k; i++) {
+                int id = landmarks[i];
+                landmarks[i] = g.indexOf(id);
+                if (landmarks[i] < 0) throw new IOException("Landmark file was written for another graph");
+            }
+            int[][] fromLandmarks = new int[k][n];
+            for (int[] row : fromLandmarks) {
+                MappedGraf.mapSection(channel, position, n).get(row);
+                position += (long) n * Integer.BYTES;
+            }
+            int[][] toLandmarks = fromLandmarks;
+            if (g.isDirected()) {
+                toLandmarks = new int[k][n];
+                for (int[] row : toLandmarks) {
+                    MappedGraf.mapSection(channel, position, n).get(row);
+                    position += (long) n * Integer.BYTES;
+                }
+            }
+            return new LandmarkIndex(g, landmarks, fromLandmarks, toLandmarks);
+        }
+    }
+
+    private static int flagsOf(FrozenGraf g) {
+        return (g.isDirected() ? DIRECTED : 0) | (g.weights() != null ? WEIGHTED : 0);
+    }
+
+    /**
+     * Finds a shortest path between two nodes. The arrays of the search are kept in the index for the next queries
+     * @param from_id int id of the origin
+     * @param to_id int id of the destination
+     * @return the path, which does not exist if the destination cannot be reached
+     * @throws IllegalArgumentException if the graph does not contain one of the nodes
+     */
+    public Route route(int from_id, int to_id) {
+        int s = g.indexOf(from_id);
+        int t = g.indexOf(to_id);
+        if (s < 0) throw new IllegalArgumentException("The graph does not contain the node " + from_id);
+        if (t < 0) throw new IllegalArgumentException("The graph does not contain the node " + to_id);
+        LandmarkSearch search = searches.acquire();
+        try {
+            return search.run(s, t);
+        } finally {
+            searches.release(search);
+        }
+    }
+
+    /**
+     * Gets the distance between two nodes
+     * @param from_id int id of the origin
+     * @param to_id int id of the destination
+     * @return the total weight of a shortest path, -1 if the destination cannot be reached
+     * @throws IllegalArgumentException if the graph does not contain one of the nodes
+     */
+    public long distance(int from_id, int to_id) {
+        return route(from_id, to_id).getDistance();
+    }
+
+    /**
+     * Gets the ids of the landmarks
+     * @return the ids, in the order the landmarks were chosen
+     */
+    public int[] getLandmarks() {
+        int[] ids = new int[landmarks.length];
+        for (int i = 0; i < ids.length; i++) ids[i] = g.idAt(landmarks[i]);
+        return ids;
+    }
+
+    /**
+     * Gets the number of landmarks
+     */
+    public int nbLandmarks() {
+        return landmarks.length;
+    }
+
+    FrozenGraf graf() {
+        return g;
+    }
+
+    /**
+     * Computes the lower bound given by one landmark of the distance between two nodes
+     * @param landmark position of the landmark
+     * @param v compact index of the first node
+     * @param t compact index of the second node
+     * @return a lower bound of the distance from v to t, -1 if the tables show there is no path
+     */
+    long bound(int landmark, int v, int t) {
+        int[] from = fromLandmarks[landmark];
+        int[] to = toLandmarks[landmark];
+        long bound = 0;
+        //t reaches the landmark, so v must reach it too
+        if (to[t] >= 0) {
+            if (to[v] < 0) return -1;
+            bound = Math.max(bound, (long) to[v] - to[t]);
+        }
+        //the landmark reaches v, so it must reach t too
+        if (from[v] >= 0) {
+            if (from[t] < 0) return -1;
+            bound = Math.max(bound, (long) from[t] - from[v]);
+        }
+        return bound;
+    }
+}
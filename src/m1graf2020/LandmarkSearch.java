@@ -0,0 +1,133 @@
+package m1graf2020;
+
+import java.util.Arrays;
+
+/**
+ * A* search of a {@link LandmarkIndex} : a Dijkstra search whose heap is keyed by the distance from the origin plus
+ * the lower bound of the distance to the destination given by the landmarks. The bound of a node is computed the first
+ * time the search reaches it, with the landmarks giving the best bounds at the origin, and a node which cannot reach
+ * the destination is never pushed. The bounds are consistent, so a node is settled once and the search stops when it
+ * settles the destination.
+ * The arrays are kept between the queries and only the cells touched by a query are reset, as in
+ * {@link BidirectionalSearch}. An instance must not be used by several threads at once.
+ */
+final class LandmarkSearch {
+    private final LandmarkIndex index;
+    private final FrozenGraf g;
+    private final long[] distances;
+    private final int[] parents;
+    //lower bound of the distance from each node to the destination, -1 if it cannot reach it, -2 if not computed
+    private final long[] bounds;
+    private final IndexedHeap heap;
+    //positions of the landmarks used by the current query
+    private final int[] active;
+    private int nbActive;
+    //nodes whose cells were set by the last query
+    private int[] touched = new int[64];
+    private int nbTouched;
+
+    LandmarkSearch(LandmarkIndex index) {
+        this.index = index;
+        this.g = index.graf();
+        int n = g.nbNodes();
+        distances = new long[n];
+        Arrays.fill(distances, -1);
+        parents = new int[n];
+        bounds = new long[n];
+        Arrays.fill(bounds, -2);
+        heap = new IndexedHeap(n);
+        active = new int[Math.min(LandmarkIndex.ACTIVE, index.nbLandmarks())];
+    }
+
+    /**
+     * Finds a shortest path between two nodes
+     * @param s compact index of the origin
+     * @param t compact index of the destination
+     * @return the path, its weight, and the number of nodes settled
+     * @throws IllegalArgumentException if the search meets an edge of negative weight
+     */
+    Route run(int s, int t) {
+        for (int i = 0; i < nbTouched; i++) {
+            distances[touched[i]] = -1;
+            bounds[touched[i]] = -2;
+        }
+        nbTouched = 0;
+        heap.clear();
+        if (!chooseLandmarks(s, t)) return new Route(null, -1, 0);
+
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] weights = g.costs();
+        int nbSettled = 0;
+        touch(s, 0, -1);
+        bounds[s] = bound(s, t);
+        heap.push(s, bounds[s]);
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            nbSettled++;
+            if (u == t) break;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int weight = weights == null ? 1 : weights[k];
+                if (weight < 0) throw new IllegalArgumentException("Negative weight on an edge of the node " + g.idAt(u));
+                int v = targets[k];
+                long distance = distances[u] + weight;
+                if (bounds[v] == -2) {
+                    touch(v, -1, -1);
+                    bounds[v] = bound(v, t);
+                }
+                if (bounds[v] < 0 || distances[v] >= 0 && distance >= distances[v]) continue;
+                distances[v] = distance;
+                parents[v] = u;
+                heap.push(v, distance + bounds[v]);
+            }
+        }
+        if (distances[t] < 0) return new Route(null, -1, nbSettled);
+
+        int length = 1;
+        for (int u = t; u != s; u = parents[u]) length++;
+        int[] path = new int[length];
+        for (int u = t, k = length - 1; k >= 0; u = parents[u], k--) path[k] = g.idAt(u);
+        return new Route(path, distances[t], nbSettled);
+    }
+
+    /**
+     * Keeps the landmarks giving the best bounds between the origin and the destination
+     * @return false if one of them shows there is no path
+     */
+    private boolean chooseLandmarks(int s, int t) {
+        nbActive = 0;
+        long[] best = new long[active.length];
+        for (int i = 0; i < index.nbLandmarks(); i++) {
+            long bound = index.bound(i, s, t);
+            if (bound < 0) return false;
+            //insertion in the landmarks kept, by decreasing bound
+            int position = nbActive;
+            while (position > 0 && best[position - 1] < bound) position--;
+            if (position == active.length) continue;
+            int end = Math.min(nbActive, active.length - 1);
+            System.arraycopy(active, position, active, position + 1, end - position);
+            System.arraycopy(best, position, best, position + 1, end - position);
+            active[position] = i;
+            best[position] = bound;
+            nbActive = end + 1;
+        }
+        return true;
+    }
+
+    private long bound(int v, int t) {
+        long bound = 0;
+        for (int i = 0; i < nbActive; i++) {
+            long b = index.bound(active[i], v, t);
+            if (b < 0) return -1;
+            bound = Math.max(bound, b);
+        }
+        return bound;
+    }
+
+    private void touch(int v, long distance, int parent) {
+        if (nbTouched == touched.length) touched = Arrays.copyOf(touched, nbTouched << 1);
+        touched[nbTouched++] = v;
+        distances[v] = distance;
+        parents[v] = parent;
+    }
+}
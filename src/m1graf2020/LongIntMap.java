@@ -0,0 +1,117 @@
+package m1graf2020;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to non negative int values, without boxing.
+ * Used to find the id of an edge from its two internal indexes packed in a long.
+ */
+final class LongIntMap {
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntMap() {
+        this(16);
+    }
+
+    LongIntMap(int expected) {
+        int capacity = 16;
+        while (capacity * 3 < expected * 4) capacity <<= 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    int size() { return size; }
+
+    /**
+     * Gets the value associated with a key
+     * @param key the key
+     * @return the value, or MISSING if the key is absent
+     */
+    int get(long key) {
+        int i = hash(key) & mask;
+        while (values[i] != MISSING) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Associates a value to a key, replacing the previous one if any
+     * @param key the key
+     * @param value a non negative value
+     */
+    void put(long key, int value) {
+        int i = hash(key) & mask;
+        while (values[i] != MISSING) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 4 > keys.length * 3) rehash(keys.length << 1);
+    }
+
+    /**
+     * Removes a key, by shifting back the following entries of its probe sequence
+     * @param key the key to be removed
+     * @return the value that was associated with the key, or MISSING
+     */
+    int remove(long key) {
+        int i = hash(key) & mask;
+        while (values[i] != MISSING) {
+            if (keys[i] == key) {
+                int removed = values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == MISSING) break;
+            int home = hash(keys[i]) & mask;
+            //the entry at i can fill the hole only if its home slot is not between the hole and i
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = MISSING;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
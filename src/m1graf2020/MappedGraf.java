@@ -0,0 +1,339 @@
+package m1graf2020;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Read-only graph queried directly from a memory-mapped binary file, without building any list or map.
+ * The file is written by {@link FrozenGraf#toBinaryFile(File)} and holds the compressed sparse row arrays of the
+ * graph, so opening it is immediate and several JVMs mapping the same file share the page cache.
+ * File layout, every value is a little endian int :
+ * magic, flags (1 = directed, 2 = weighted), nbNodes n, nbEdges, number of stored successors m,
+ * ids[n], offsets[n+1], targets[m], weights[m] if weighted, inDegrees[n] if directed.
+ */
+public final class MappedGraf {
+    static final int MAGIC = 0x31465247; //"GRF1"
+    static final int DIRECTED = 1;
+    static final int WEIGHTED = 2;
+    private static final int HEADER_INTS = 5;
+
+    private final IntBuffer ids;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer weights;
+    private final IntBuffer inDegrees;
+    private final int nbNodes;
+    private final int nbEdges;
+
+    private MappedGraf(IntBuffer ids, IntBuffer offsets, IntBuffer targets, IntBuffer weights, IntBuffer inDegrees, int nbEdges) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.inDegrees = inDegrees;
+        this.nbNodes = ids.limit();
+        this.nbEdges = nbEdges;
+    }
+
+    /**
+     * Writes a graph in the binary format
+     * @param g the graph to be written
+     * @param file file to be written
+     * @throws IOException if the file could not be written
+     */
+    static void write(FrozenGraf g, File file) throws IOException {
+        int n = g.nbNodes();
+        int m = g.targets().length;
+        int flags = (g.isDirected() ? DIRECTED : 0) | (g.weights() != null ? WEIGHTED : 0);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            long position = 0;
+            position = writeSection(channel, position, new int[]{MAGIC, flags, n, g.nbEdges(), m});
+            position = writeSection(channel, position, g.ids());
+            position = writeSection(channel, position, g.offsets());
+            position = writeSection(channel, position, g.targets());
+            if (g.weights() != null) position = writeSection(channel, position, g.weights());
+            if (g.isDirected()) position = writeSection(channel, position, g.inDegrees());
+            raf.setLength(position);
+        }
+    }
+
+    static long writeSection(FileChannel channel, long position, int[] values) throws IOException {
+        long length = (long) values.length * Integer.BYTES;
+        if (length > 0) {
+            channel.map(FileChannel.MapMode.READ_WRITE, position, length)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(values);
+        }
+        return position + length;
+    }
+
+    /**
+     * Opens a graph from a binary file, the file is mapped in memory and not read
+     * @param file file written by {@link FrozenGraf#toBinaryFile(File)}
+     * @return the mapped graph
+     * @throws IOException if the file could not be read, is not a graph file, or has a corrupted header or offsets
+     */
+    public static MappedGraf open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_INTS * Integer.BYTES) throw new IOException("File is not a graph file");
+            IntBuffer header = mapSection(channel, 0, HEADER_INTS);
+            if (header.get(0) != MAGIC) throw new IOException("File is not a graph file");
+            int flags = header.get(1);
+            int n = header.get(2);
+            int nbEdges = header.get(3);
+            int m = header.get(4);
+            if (n < 0 || nbEdges < 0 || m < 0) throw new IOException("Graph file has a corrupted header");
+
+            long expected = HEADER_INTS + n + (n + 1L) + m
+                    + ((flags & WEIGHTED) != 0 ? m : 0) + ((flags & DIRECTED) != 0 ? n : 0);
+            if (channel.size() != expected * Integer.BYTES) throw new IOException("Graph file is truncated");
+
+            long position = HEADER_INTS * Integer.BYTES;
+            IntBuffer ids = mapSection(channel, position, n);
+            position += (long) n * Integer.BYTES;
+            IntBuffer offsets = mapSection(channel, position, n + 1);
+            //the rows must cover the targets exactly, the searches read offsets[u+1] for every node
+            if (offsets.get(0) != 0 || offsets.get(n) != m) throw new IOException("Graph file has corrupted offsets");
+            position += (n + 1L) * Integer.BYTES;
+            IntBuffer targets = mapSection(channel, position, m);
+            position += (long) m * Integer.BYTES;
+            IntBuffer weights = null;
+            if ((flags & WEIGHTED) != 0) {
+                weights = mapSection(channel, position, m);
+                position += (long) m * Integer.BYTES;
+            }
+            IntBuffer inDegrees = (flags & DIRECTED) != 0 ? mapSection(channel, position, n) : null;
+            return new MappedGraf(ids, offsets, targets, weights, inDegrees, nbEdges);
+        }
+    }
+
+    static IntBuffer mapSection(FileChannel channel, long position, int count) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Gets the compact index of a node, by binary search in the sorted ids
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the graph does not contain it
+     */
+    public int indexOf(int id) {
+        int low = 0;
+        int high = nbNodes - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = ids.get(middle);
+            if (value < id) low = middle + 1;
+            else if (value > id) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the id of the node stored at a compact index
+     * @param index an index between 0 and nbNodes()-1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return ids.get(index);
+    }
+
+    /**
+     * Tells if the graph was written from a directed graph
+     * @return true if directed, false if undirected
+     */
+    public boolean isDirected() {
+        return inDegrees != null;
+    }
+
+    /**
+     * Gets the number of nodes in the graph
+     * @return the number of nodes in the graph
+     */
+    public int nbNodes() { return nbNodes; }
+
+    /**
+     * Gets the total number of edges in the graph
+     * @return the total number of edges in the graph
+     */
+    public int nbEdges() { return nbEdges; }
+
+    /**
+     * Tests if the graph contains a node
+     * @param id int id representing the node we search for in the graph
+     * @return true if the graph contains the node, false if not
+     */
+    public boolean existsNode(int id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * Returns a List of all the nodes in the graph, in increasing id order
+     * @return a List of all the nodes in the graph
+     */
+    public List<Node> getAllNodes() {
+        List<Node> nodes = new ArrayList<>(nbNodes);
+        for (int i = 0; i < nbNodes; i++) nodes.add(new Node(ids.get(i)));
+        return nodes;
+    }
+
+    /**
+     * Gets the list of all the successors of a node, in increasing id order
+     * @param id int representing the node whose successors we want
+     * @return the list of successors, or null if the graph does not contain the node
+     */
+    public List<Node> getSuccessors(int id) {
+        int u = indexOf(id);
+        if (u < 0) return null;
+        int end = offsets.get(u + 1);
+        List<Node> successors = new ArrayList<>(end - offsets.get(u));
+        for (int k = offsets.get(u); k < end; k++) {
+            successors.add(new Node(ids.get(targets.get(k))));
+        }
+        return successors;
+    }
+
+    /**
+     * Gets the list of all the successors of a node, in increasing id order
+     * @param n node whose successors we want
+     * @return the list of successors, or null if the graph does not contain the node
+     */
+    public List<Node> getSuccessors(Node n) {
+        return getSuccessors(n.getId());
+    }
+
+    /**
+     * Gets the ids of all the successors of a node, in increasing order, without creating any Node
+     * @param id int representing the node whose successors we want
+     * @return an int array of the successor ids, or null if the graph does not contain the node
+     */
+    public int[] getSuccessorIds(int id) {
+        int u = indexOf(id);
+        if (u < 0) return null;
+        int start = offsets.get(u);
+        int[] successors = new int[offsets.get(u + 1) - start];
+        for (int k = 0; k < successors.length; k++) {
+            successors[k] = ids.get(targets.get(start + k));
+        }
+        return successors;
+    }
+
+    /**
+     * Gets the number of edges leaving a node
+     * @param id int id representing a node
+     * @return an int representing the number of edges leaving a node
+     */
+    public int outDegree(int id) {
+        int u = indexOf(id);
+        return u < 0 ? 0 : offsets.get(u + 1) - offsets.get(u);
+    }
+
+    /**
+     * Gets the number of edges coming to a node
+     * @param id int id representing a node
+     * @return an int representing the number of edges coming to a node
+     */
+    public int inDegree(int id) {
+        if (inDegrees == null) return outDegree(id);
+        int u = indexOf(id);
+        return u < 0 ? 0 : inDegrees.get(u);
+    }
+
+    /**
+     * Gets the number of edges both leaving and coming to a node
+     * @param id int id representing a node
+     * @return an int representing the number of edges both leaving and coming to a node
+     */
+    public int degree(int id) {
+        if (inDegrees == null) return outDegree(id);
+        return inDegree(id) + outDegree(id);
+    }
+
+    /**
+     * Searches the position of an edge in the row of u, by binary search
+     * @return the position of the edge in targets, or -1 if there is none
+     */
+    private int find(int u, int v) {
+        int low = offsets.get(u);
+        int high = offsets.get(u + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = targets.get(middle);
+            if (value < v) low = middle + 1;
+            else if (value > v) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Tests the adjacency of two nodes, as in if the graph contains an edge from one to the other
+     * @param u_id an int id representing a node
+     * @param v_id an int id representing another node
+     * @return true if the nodes are adjacent, false if not
+     */
+    public boolean adjacent(int u_id, int v_id) {
+        int u = indexOf(u_id);
+        int v = indexOf(v_id);
+        if (u < 0 || v < 0) return false;
+        return find(u, v) >= 0 || find(v, u) >= 0;
+    }
+
+    /**
+     * Tests if the graph contains an edge from one node to another
+     * @param u_id int id representing a node
+     * @param v_id int id representing another node
+     * @return true if there is an edge between the two nodes, false if not
+     */
+    public boolean existsEdge(int u_id, int v_id) {
+        return adjacent(u_id, v_id);
+    }
+
+    /**
+     * Gets the weight of the edge from one node to another
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return the weight of the edge, or 0 if the edge has no weight or does not exist
+     */
+    public int getWeight(int from_id, int to_id) {
+        int u = indexOf(from_id);
+        int v = indexOf(to_id);
+        if (weights == null || u < 0 || v < 0) return 0;
+        int k = find(u, v);
+        return k < 0 ? 0 : weights.get(k);
+    }
+
+    /**
+     * Computes a breadth-first-search of the graph, starting from the node with the smallest id
+     * @return a list of nodes representing a breadth-first-search of the graph in order
+     */
+    public List<Node> getBFS() {
+        return new Listing().bfs();
+    }
+
+    /**
+     * Computes a depth-first-search of the graph, nodes are listed when they are finished
+     * @return a list of nodes representing a depth-first-search of the graph in order
+     */
+    public List<Node> getDFS() {
+        return new Listing().dfs();
+    }
+
+    /**
+     * Reads the mapped rows for getBFS() and getDFS(), successors being explored in increasing id order
+     */
+    private final class Listing extends NodeListing {
+        int bound() { return nbNodes; }
+        int nbNodes() { return nbNodes; }
+        int root(int i) { return i; }
+        int rowStart(int u) { return offsets.get(u); }
+        int rowEnd(int u) { return offsets.get(u + 1); }
+        int target(int u, int k) { return targets.get(k); }
+        Node node(int u) { return new Node(ids.get(u)); }
+    }
+}
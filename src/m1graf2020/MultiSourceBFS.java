@@ -0,0 +1,178 @@
+package m1graf2020;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Breadth first searches from many sources at once : the sources are taken by batches of 64, each node holding a
+ * long whose bit i tells if the search from the i-th source of the batch has reached it, so that one scan of the
+ * row of a node moves the frontiers of all the searches of the batch which are on it.
+ * While the frontiers are small, a level goes from the nodes on a frontier to their successors. Once they hold a large
+ * part of the edges, it goes from the nodes not yet reached by all the searches to their predecessors, a node
+ * stopping as soon as the searches missing it are all found, as in {@link BreadthFirstSearch}.
+ * The batches are independent, they run in parallel on the fork-join common pool when computing a distance matrix.
+ */
+public final class MultiSourceBFS {
+    //a level goes bottom-up when the frontiers have more than 1/ALPHA of the edges
+    private static final int ALPHA = 14;
+
+    /**
+     * Callback called once for each source and each node it reaches
+     */
+    public interface Visitor {
+        /**
+         * @param source_id int id of the source
+         * @param id int id of the node reached, the source itself included
+         * @param distance number of edges of a shortest path from the source to the node
+         */
+        void visit(int source_id, int id, int distance);
+    }
+
+    //same as Visitor, with positions in the sources and compact indexes
+    private interface IndexVisitor {
+        void visit(int source, int index, int distance);
+    }
+
+    private MultiSourceBFS() {
+    }
+
+    /**
+     * Computes the distances from several sources to all the nodes, the batches of 64 sources running on all the cores
+     * @param g the graph, directed or not
+     * @param source_ids ids of the sources, one row of the matrix each
+     * @return a matrix where [i][v] is the distance from the i-th source to the node of compact index v,
+     * -1 if it does not reach it
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public static int[][] distances(FrozenGraf g, int... source_ids) {
+        return distances(g, true, source_ids);
+    }
+
+    /**
+     * Computes the distances from several sources to all the nodes
+     * @param g the graph, directed or not
+     * @param parallel true to run the batches of 64 sources on several threads, false to run them in the calling thread
+     * @param source_ids ids of the sources, one row of the matrix each
+     * @return a matrix where [i][v] is the distance from the i-th source to the node of compact index v,
+     * -1 if it does not reach it
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public static int[][] distances(FrozenGraf g, boolean parallel, int... source_ids) {
+        int[] sources = indexesOf(g, source_ids);
+        int[][] distances = new int[sources.length][g.nbNodes()];
+        for (int[] row : distances) Arrays.fill(row, -1);
+        IntStream batches = IntStream.range(0, (sources.length + 63) >>> 6);
+        if (parallel) batches = batches.parallel();
+        //each batch writes its own rows
+        batches.forEach(b -> batch(g, sources, b << 6, Math.min(sources.length, (b + 1) << 6),
+                (source, index, distance) -> distances[source][index] = distance));
+        return distances;
+    }
+
+    /**
+     * Runs breadth first searches from several sources, calling a visitor for each source and each node it reaches,
+     * without building any matrix. The batches run one after the other in the calling thread
+     * @param g the graph, directed or not
+     * @param visitor the callback, called level by level within a batch of 64 sources
+     * @param source_ids ids of the sources
+     * @throws IllegalArgumentException if the graph does not contain one of the sources
+     */
+    public static void forEach(FrozenGraf g, Visitor visitor, int... source_ids) {
+        int[] sources = indexesOf(g, source_ids);
+        int[] ids = g.ids();
+        for (int from = 0; from < sources.length; from += 64) {
+            batch(g, sources, from, Math.min(sources.length, from + 64),
+                    (source, index, distance) -> visitor.visit(source_ids[source], ids[index], distance));
+        }
+    }
+
+    private static int[] indexesOf(FrozenGraf g, int[] source_ids) {
+        int[] sources = new int[source_ids.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = g.indexOf(source_ids[i]);
+            if (sources[i] < 0) throw new IllegalArgumentException("The graph does not contain the node " + source_ids[i]);
+        }
+        return sources;
+    }
+
+    /**
+     * Runs the searches from the sources at the positions from to to-1, at most 64
+     */
+    private static void batch(FrozenGraf g, int[] sources, int from, int to, IndexVisitor visitor) {
+        int n = g.nbNodes();
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] inOffsets = g.getReverse().offsets();
+        int[] inSources = g.getReverse().targets();
+        long all = to - from == 64 ? -1L : (1L << (to - from)) - 1;
+        //searches having reached each node, and searches having each node on their frontier, now and at the next level
+        long[] seen = new long[n];
+        long[] visit = new long[n];
+        long[] next = new long[n];
+        //nodes having a bit in visit, and in next
+        int[] active = new int[n];
+        int[] nextActive = new int[n];
+        int nbActive = 0;
+
+        for (int i = from; i < to; i++) {
+            int s = sources[i];
+            if (visit[s] == 0) active[nbActive++] = s;
+            seen[s] |= 1L << (i - from);
+            visit[s] |= 1L << (i - from);
+            visitor.visit(i, s, 0);
+        }
+
+        int distance = 0;
+        while (nbActive > 0) {
+            distance++;
+            int nbNext = 0;
+            long frontierEdges = 0;
+            for (int a = 0; a < nbActive; a++) frontierEdges += offsets[active[a] + 1] - offsets[active[a]];
+            if (frontierEdges > offsets[n] / ALPHA) {
+                //bottom-up : next is filled in increasing index order, the active nodes are rebuilt from it
+                for (int w = 0; w < n; w++) {
+                    long missing = all & ~seen[w];
+                    if (missing == 0) continue;
+                    long reached = 0;
+                    for (int k = inOffsets[w]; k < inOffsets[w + 1] && reached != missing; k++) {
+                        reached |= visit[inSources[k]] & missing;
+                    }
+                    if (reached == 0) continue;
+                    nextActive[nbNext++] = w;
+                    next[w] = reached;
+                    seen[w] |= reached;
+                    report(visitor, from, w, reached, distance);
+                }
+                for (int a = 0; a < nbActive; a++) visit[active[a]] = 0;
+            } else {
+                for (int a = 0; a < nbActive; a++) {
+                    int v = active[a];
+                    long frontier = visit[v];
+                    for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                        int w = targets[k];
+                        long reached = frontier & ~seen[w];
+                        if (reached == 0) continue;
+                        if (next[w] == 0) nextActive[nbNext++] = w;
+                        next[w] |= reached;
+                        seen[w] |= reached;
+                        report(visitor, from, w, reached, distance);
+                    }
+                    visit[v] = 0;
+                }
+            }
+            long[] swap = visit;
+            visit = next;
+            next = swap;
+            int[] swapActive = active;
+            active = nextActive;
+            nextActive = swapActive;
+            nbActive = nbNext;
+        }
+    }
+
+    private static void report(IndexVisitor visitor, int from, int index, long reached, int distance) {
+        for (; reached != 0; reached &= reached -1) {
+            visitor.visit(from + Long.numberOfTrailingZeros(reached), index, distance);
+        }
+    }
+}
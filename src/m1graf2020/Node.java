@@ -4,20 +4,13 @@ public class Node implements Comparable<Node>{
 
     private final int id;
     private String label;
-    private static int biggestId = 0;
-
-    public Node() {
-        this.id = ++biggestId;
-    }
 
     public Node(int id) {
         this.id = id;
-        if(this.id > biggestId) biggestId = this.id;
     }
 
     public Node(int id, String label) {
         this.id = id;
-        if(this.id > biggestId) biggestId = this.id;
         this.label = label;
     }
 
@@ -47,10 +40,6 @@ public class Node implements Comparable<Node>{
         return label;
     }
 
-    public static int getBiggestId() {
-        return biggestId;
-    }
-
     @Override
     public int compareTo(Node o) {
         return Integer.compare(this.getId(), o.getId());
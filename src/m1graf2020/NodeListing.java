@@ -0,0 +1,108 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Breadth first and depth first listings of the nodes, as returned by getBFS() and getDFS(), written once for all the
+ * graph classes : each of them reads its rows through a subclass. Nodes are read by internal index, the row of a node
+ * u holds the targets target(u, k) for k from rowStart(u) to rowEnd(u)-1.
+ */
+abstract class NodeListing {
+
+    /**
+     * Gets a bound of the internal indexes : every index used by a node is lower than it
+     */
+    abstract int bound();
+
+    /**
+     * Gets the number of nodes
+     */
+    abstract int nbNodes();
+
+    /**
+     * Gets the internal index of the node of the i-th smallest id
+     */
+    abstract int root(int i);
+
+    abstract int rowStart(int u);
+
+    abstract int rowEnd(int u);
+
+    /**
+     * Gets the internal index stored at a position of the row of a node
+     */
+    abstract int target(int u, int k);
+
+    /**
+     * Gets the Node object of an internal index
+     */
+    abstract Node node(int u);
+
+    /**
+     * Lists the nodes reached by a breadth first search starting from the node with the smallest id
+     */
+    final List<Node> bfs() {
+        List<Node> bfs = new ArrayList<>();
+        if (nbNodes() == 0) return bfs;
+
+        boolean[] visited = new boolean[bound()];
+        int[] queue = new int[nbNodes()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = root(0);
+        visited[root(0)] = true;
+
+        while (head < tail) {
+            int u = queue[head++];
+            for (int k = rowStart(u), end = rowEnd(u); k < end; k++) {
+                int v = target(u, k);
+                if (!visited[v]) {
+                    visited[v] = true;
+                    queue[tail++] = v;
+                }
+            }
+            bfs.add(node(u));
+        }
+        return bfs;
+    }
+
+    /**
+     * Lists all the nodes in the order a depth first search finishes them, the roots being taken in increasing id order
+     */
+    final List<Node> dfs() {
+        int n = nbNodes();
+        List<Node> dfs = new ArrayList<>(n);
+        Graf.color[] color = new Graf.color[bound()];
+        Arrays.fill(color, Graf.color.WHITE);
+        //explicit stack : the cursor of each stacked node is the next position to explore in its row
+        int[] stack = new int[n];
+        int[] cursor = new int[bound()];
+
+        for (int i = 0; i < n; i++) {
+            int root = root(i);
+            if (color[root] != Graf.color.WHITE) continue;
+            int top = 0;
+            stack[0] = root;
+            cursor[root] = rowStart(root);
+            color[root] = Graf.color.GREY;
+            while (top >= 0) {
+                int u = stack[top];
+                if (cursor[u] < rowEnd(u)) {
+                    int v = target(u, cursor[u]++);
+                    if (color[v] == Graf.color.WHITE) {
+                        color[v] = Graf.color.GREY;
+                        cursor[v] = rowStart(v);
+                        stack[++top] = v;
+                    }
+                } else {
+                    color[u] = Graf.color.BLACK;
+                    dfs.add(node(u));
+                    top--;
+                }
+            }
+        }
+        return dfs;
+    }
+}
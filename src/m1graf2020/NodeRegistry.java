@@ -0,0 +1,161 @@
+package m1graf2020;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nodes of one graph : maps the id of each node to a compact internal index and keeps a single Node object per node,
+ * so that looking a node up does not create any object. Indexes of removed nodes are reused.
+ */
+final class NodeRegistry {
+    private IntIntMap indexOfId = new IntIntMap();
+    private final AtomicInteger biggestId = new AtomicInteger();
+    private Node[] nodes = new Node[16];
+    private int[] ids = new int[16];
+    private int bound;
+    private int[] freeIndexes = new int[16];
+    private int nbFreeIndexes;
+    private volatile int[] sortedIndexes;
+    //true if the map and the arrays are also used by a view, they are copied before being modified
+    private boolean shared;
+
+    /**
+     * Gets the internal index of a node
+     * @param id int id representing a node
+     * @return the internal index of the node, or Graf.FREE if the node is not registered
+     */
+    int indexOf(int id) {
+        return indexOfId.get(id);
+    }
+
+    /**
+     * Gets the id of the node registered at an internal index
+     */
+    int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the Node object registered at an internal index
+     */
+    Node nodeAt(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Tests if an internal index is used by a node
+     */
+    boolean isUsed(int index) {
+        return nodes[index] != null;
+    }
+
+    /**
+     * Gets the number of registered nodes
+     */
+    int size() {
+        return indexOfId.size();
+    }
+
+    /**
+     * Gets a bound of the internal indexes : every used index is lower than it
+     */
+    int bound() {
+        return bound;
+    }
+
+    /**
+     * Gets the biggest id ever registered in this graph
+     */
+    int biggestId() {
+        return biggestId.get();
+    }
+
+    /**
+     * Allocates an id bigger than every id registered so far, safe to call from several threads
+     * @return the new id, which is not registered yet
+     */
+    int allocateId() {
+        return biggestId.incrementAndGet();
+    }
+
+    /**
+     * Registers a node, the node must not be registered yet
+     * @param n the node to be registered
+     * @return the internal index of the node
+     */
+    int register(Node n) {
+        unshare();
+        int index;
+        if (nbFreeIndexes > 0) {
+            index = freeIndexes[--nbFreeIndexes];
+        } else {
+            if (bound == ids.length) {
+                ids = Arrays.copyOf(ids, bound << 1);
+                nodes = Arrays.copyOf(nodes, bound << 1);
+            }
+            index = bound++;
+        }
+        int id = n.getId();
+        ids[index] = id;
+        nodes[index] = n;
+        indexOfId.put(id, index);
+        biggestId.accumulateAndGet(id, Math::max);
+        sortedIndexes = null;
+        return index;
+    }
+
+    /**
+     * Unregisters the node at an internal index, the index will be reused
+     */
+    void unregister(int index) {
+        unshare();
+        indexOfId.remove(ids[index]);
+        nodes[index] = null;
+        if (nbFreeIndexes == freeIndexes.length) freeIndexes = Arrays.copyOf(freeIndexes, nbFreeIndexes << 1);
+        freeIndexes[nbFreeIndexes++] = index;
+        sortedIndexes = null;
+    }
+
+    /**
+     * Gets a read-only view of the nodes registered so far, this registry copies its arrays before its next modification
+     */
+    NodeRegistry share() {
+        NodeRegistry view = new NodeRegistry();
+        view.indexOfId = indexOfId;
+        view.biggestId.set(biggestId.get());
+        view.nodes = nodes;
+        view.ids = ids;
+        view.bound = bound;
+        view.sortedIndexes = sortedIndexes;
+        shared = true;
+        return view;
+    }
+
+    private void unshare() {
+        if (shared) {
+            indexOfId = indexOfId.copy();
+            nodes = nodes.clone();
+            ids = ids.clone();
+            shared = false;
+        }
+    }
+
+    /**
+     * Gets the internal indexes of all the nodes, in increasing id order
+     * @return the internal indexes of the nodes, must not be modified
+     */
+    int[] sortedIndexes() {
+        if (sortedIndexes == null) {
+            long[] keys = new long[size()];
+            int k = 0;
+            for (int index = 0; index < bound; index++) {
+                if (nodes[index] != null) keys[k++] = ((long) ids[index] << 32) | index;
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) sorted[i] = (int) keys[i];
+            sortedIndexes = sorted;
+        }
+        return sortedIndexes;
+    }
+}
@@ -0,0 +1,251 @@
+package m1graf2020;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Strongly connected components found on all the cores, by the forward-backward and coloring method :
+ * <ul>
+ * <li>trimming : a node without predecessor or without successor among the nodes left is a component on its own.
+ * Each node counts its edges from and to the nodes left, and removing a node decrements the counts of its neighbors,
+ * the nodes whose count falls to 0 being removed at the next step, so trimming costs the edges it removes.</li>
+ * <li>forward-backward : the nodes reached from a pivot which also reach it are its component. The pivot has many
+ * edges in both directions, so this finds the giant component most graphs have.</li>
+ * <li>coloring : every node takes the largest index of the nodes reaching it, then each node keeping its own index
+ * is the root of a component, made of the nodes of its color which reach it. All the colors are solved at once, and
+ * the coloring is repeated on the nodes left.</li>
+ * </ul>
+ * Each step goes over a frontier of nodes, split in chunks running in parallel on the fork-join common pool, and
+ * the removed nodes and the nodes reached are claimed with compare-and-set on bitsets, as in {@link BreadthFirstSearch}.
+ */
+final class ParallelComponents {
+    //number of nodes of a frontier processed by a task
+    private static final int CHUNK = 1024;
+
+    private final int n;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] inOffsets;
+    private final int[] sources;
+    //representative of the component of each node, set when the node is removed
+    private final int[] representative;
+    //removed nodes, whose component is known, one bit per node
+    private final AtomicLongArray removed;
+    //number of edges from and to the nodes left
+    private final AtomicIntegerArray inCount;
+    private final AtomicIntegerArray outCount;
+
+    private interface Step {
+        void run(int v, Buffer next);
+    }
+
+    private static final class Buffer {
+        int[] values = new int[16];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size << 1);
+            values[size++] = v;
+        }
+    }
+
+    private ParallelComponents(FrozenGraf g) {
+        n = g.nbNodes();
+        offsets = g.offsets();
+        targets = g.targets();
+        FrozenGraf reverse = g.getReverse();
+        inOffsets = reverse.offsets();
+        sources = reverse.targets();
+        representative = new int[n];
+        removed = new AtomicLongArray((n + 63) >>> 6);
+        inCount = new AtomicIntegerArray(n);
+        outCount = new AtomicIntegerArray(n);
+    }
+
+    /**
+     * Finds the strongly connected components of a graph
+     * @param g the graph, directed or not
+     * @return the representative of the component of the node of each compact index, a node of the component
+     */
+    static int[] representatives(FrozenGraf g) {
+        ParallelComponents components = new ParallelComponents(g);
+        components.run();
+        return components.representative;
+    }
+
+    private void run() {
+        IntStream.range(0, n).parallel().forEach(v -> {
+            inCount.set(v, inOffsets[v + 1] - inOffsets[v]);
+            outCount.set(v, offsets[v + 1] - offsets[v]);
+        });
+        trim(IntStream.range(0, n).parallel().filter(v -> (inCount.get(v) == 0 || outCount.get(v) == 0) && claim(v, v)).toArray());
+
+        //forward-backward from the node left with the most edges in both directions
+        int pivot = -1;
+        long best = 0;
+        for (int v = 0; v < n; v++) {
+            long edges = (long) inCount.get(v) * outCount.get(v);
+            if (!isRemoved(v) && edges > best) {
+                best = edges;
+                pivot = v;
+            }
+        }
+        if (pivot >= 0) {
+            AtomicLongArray forward = new AtomicLongArray(removed.length());
+            set(forward, pivot);
+            for (int[] frontier = {pivot}; frontier.length > 0; ) {
+                frontier = expand(frontier, (u, next) -> {
+                    for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                        int v = targets[k];
+                        if (!isRemoved(v) && set(forward, v)) next.add(v);
+                    }
+                });
+            }
+            //the nodes reaching the pivot through nodes it reaches are its component
+            int root = pivot;
+            claim(pivot, pivot);
+            release(reach(new int[]{pivot}, (u, next) -> {
+                for (int k = inOffsets[u]; k < inOffsets[u + 1]; k++) {
+                    int v = sources[k];
+                    if (isSet(forward, v) && claim(v, root)) next.add(v);
+                }
+            }));
+        }
+
+        while (true) {
+            int[] left = IntStream.range(0, n).parallel().filter(v -> !isRemoved(v)).toArray();
+            if (left.length == 0) break;
+            AtomicIntegerArray color = new AtomicIntegerArray(n);
+            for (int v : left) color.set(v, v);
+            for (int[] frontier = left; frontier.length > 0; ) {
+                AtomicLongArray queued = new AtomicLongArray(removed.length());
+                frontier = expand(frontier, (u, next) -> {
+                    int c = color.get(u);
+                    for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                        int v = targets[k];
+                        if (!isRemoved(v) && raise(color, v, c) && set(queued, v)) next.add(v);
+                    }
+                });
+            }
+            int[] roots = IntStream.of(left).parallel().filter(v -> color.get(v) == v && claim(v, v)).toArray();
+            release(reach(roots, (u, next) -> {
+                int c = color.get(u);
+                for (int k = inOffsets[u]; k < inOffsets[u + 1]; k++) {
+                    int v = sources[k];
+                    if (color.get(v) == c && !isRemoved(v) && claim(v, c)) next.add(v);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Removes some nodes, whose components are known, then trims the nodes left
+     */
+    private void release(int[] nodes) {
+        trim(expand(nodes, this::removeEdges));
+    }
+
+    /**
+     * Removes the nodes of a frontier, and the nodes left without predecessor or successor, until there are none
+     * @param frontier removed nodes whose edges are still counted by their neighbors
+     */
+    private void trim(int[] frontier) {
+        while (frontier.length > 0) frontier = expand(frontier, this::removeEdges);
+    }
+
+    /**
+     * Removes the edges of a removed node from the counts of its neighbors, and removes the neighbors left without
+     * predecessor or without successor
+     */
+    private void removeEdges(int u, Buffer next) {
+        for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+            int v = targets[k];
+            if (!isRemoved(v) && inCount.decrementAndGet(v) == 0 && claim(v, v)) next.add(v);
+        }
+        for (int k = inOffsets[u]; k < inOffsets[u + 1]; k++) {
+            int v = sources[k];
+            if (!isRemoved(v) && outCount.decrementAndGet(v) == 0 && claim(v, v)) next.add(v);
+        }
+    }
+
+    /**
+     * Runs a search until its frontier is empty
+     * @return all the nodes of the frontiers, the first one included
+     */
+    private int[] reach(int[] frontier, Step step) {
+        Buffer all = new Buffer();
+        while (frontier.length > 0) {
+            for (int v : frontier) all.add(v);
+            frontier = expand(frontier, step);
+        }
+        return Arrays.copyOf(all.values, all.size);
+    }
+
+    /**
+     * Runs a step on every node of a frontier, the chunks of the frontier in parallel
+     * @return the next frontier, the nodes the step added
+     */
+    private static int[] expand(int[] frontier, Step step) {
+        int nbChunks = (frontier.length + CHUNK - 1) / CHUNK;
+        Buffer[] buffers = IntStream.range(0, nbChunks).parallel().mapToObj(c -> {
+            Buffer next = new Buffer();
+            for (int i = c * CHUNK; i < Math.min(frontier.length, (c + 1) * CHUNK); i++) step.run(frontier[i], next);
+            return next;
+        }).toArray(Buffer[]::new);
+        int size = 0;
+        for (Buffer buffer : buffers) size += buffer.size;
+        int[] next = new int[size];
+        size = 0;
+        for (Buffer buffer : buffers) {
+            System.arraycopy(buffer.values, 0, next, size, buffer.size);
+            size += buffer.size;
+        }
+        return next;
+    }
+
+    private boolean isRemoved(int v) {
+        return isSet(removed, v);
+    }
+
+    /**
+     * Removes a node, in a single thread if several try at once
+     * @return true if this call removed it
+     */
+    private boolean claim(int v, int root) {
+        if (!set(removed, v)) return false;
+        representative[v] = root;
+        return true;
+    }
+
+    private static boolean isSet(AtomicLongArray bits, int v) {
+        return (bits.get(v >>> 6) & (1L << v)) != 0;
+    }
+
+    /**
+     * Sets the bit of a node
+     * @return true if this call set it, false if it was already set
+     */
+    private static boolean set(AtomicLongArray bits, int v) {
+        int word = v >>> 6;
+        long bit = 1L << v;
+        while (true) {
+            long value = bits.get(word);
+            if ((value & bit) != 0) return false;
+            if (bits.compareAndSet(word, value, value | bit)) return true;
+        }
+    }
+
+    /**
+     * Raises the color of a node
+     * @return true if this call raised it
+     */
+    private static boolean raise(AtomicIntegerArray color, int v, int c) {
+        while (true) {
+            int value = color.get(v);
+            if (value >= c) return false;
+            if (color.compareAndSet(v, value, c)) return true;
+        }
+    }
+}
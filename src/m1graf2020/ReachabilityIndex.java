@@ -0,0 +1,172 @@
+package m1graf2020;
+
+import java.util.Arrays;
+
+/**
+ * Answers reachability queries without traversing the graph, with a 2-hop labelling of its condensation.
+ * The strongly connected components are condensed first, then every component k gets two sorted lists of
+ * components : out(k), components it reaches, and in(k), components reaching it, so that u reaches v if and only if
+ * out(u) and in(v) share a component. The labels are built by pruned breadth first searches from each component,
+ * the most connected first, which skip the components already covered by the labels of the previous ones and keep
+ * the lists short. The index is immutable and can be queried from several threads.
+ */
+public final class ReachabilityIndex {
+    private final int[] ids;
+    private final int[] component;
+    private final int nbComponents;
+    //labels of the component k : outLabels[outOffsets[k]] to outLabels[outOffsets[k+1]-1], same for in
+    private final int[] outOffsets;
+    private final int[] outLabels;
+    private final int[] inOffsets;
+    private final int[] inLabels;
+
+    /**
+     * Builds the index of a graph
+     * @param g the graph
+     */
+    public ReachabilityIndex(Graf g) {
+        this(g.freeze());
+    }
+
+    /**
+     * Builds the index of a graph
+     * @param g the graph, directed or not
+     */
+    public ReachabilityIndex(FrozenGraf g) {
+        ids = g.ids();
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(g);
+        component = scc.component;
+        int c = nbComponents = scc.count;
+        FrozenGraf dag = scc.condense(g.offsets(), g.targets());
+        FrozenGraf reverse = dag.getReverse();
+
+        //the components joining the most paths cover the most pairs, their searches go first
+        long[] keys = new long[c];
+        for (int k = 0; k < c; k++) {
+            long paths = (long) (dag.offsets()[k + 1] - dag.offsets()[k] + 1) * (reverse.offsets()[k + 1] - reverse.offsets()[k] + 1);
+            keys[k] = (-paths << 32) | k;
+        }
+        Arrays.sort(keys);
+
+        int[][] out = new int[c][];
+        int[][] in = new int[c][];
+        int[] outSizes = new int[c];
+        int[] inSizes = new int[c];
+        int[] marks = new int[c];
+        int[] visited = new int[c];
+        int[] queue = new int[c];
+        for (int r = 0; r < c; r++) {
+            int v = (int) keys[r];
+            //forward search : r joins in(w) for the components w reached from v and not covered yet
+            for (int i = 0; i < outSizes[v]; i++) marks[out[v][i]] = 2 * r + 1;
+            prunedSearch(dag, v, r, 2 * r + 1, in, inSizes, marks, visited, queue);
+            //backward search : r joins out(w) for the components w reaching v and not covered yet
+            for (int i = 0; i < inSizes[v]; i++) marks[in[v][i]] = 2 * r + 2;
+            prunedSearch(reverse, v, r, 2 * r + 2, out, outSizes, marks, visited, queue);
+        }
+
+        outOffsets = new int[c + 1];
+        inOffsets = new int[c + 1];
+        for (int k = 0; k < c; k++) {
+            outOffsets[k + 1] = outOffsets[k] + outSizes[k];
+            inOffsets[k + 1] = inOffsets[k] + inSizes[k];
+        }
+        outLabels = new int[outOffsets[c]];
+        inLabels = new int[inOffsets[c]];
+        for (int k = 0; k < c; k++) {
+            System.arraycopy(out[k], 0, outLabels, outOffsets[k], outSizes[k]);
+            System.arraycopy(in[k], 0, inLabels, inOffsets[k], inSizes[k]);
+        }
+    }
+
+    /**
+     * Breadth first search from a component which adds a rank to the labels of the components it reaches,
+     * without going past the components whose labels already share a rank with the marked label of the source
+     * @param stamp value of the marks of the source label, also used to mark the components visited
+     */
+    private static void prunedSearch(FrozenGraf dag, int source, int rank, int stamp,
+                                     int[][] labels, int[] sizes, int[] marks, int[] visited, int[] queue) {
+        int[] offsets = dag.offsets();
+        int[] targets = dag.targets();
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        visited[source] = stamp;
+        while (head < tail) {
+            int w = queue[head++];
+            if (covered(labels[w], sizes[w], marks, stamp)) continue;
+            if (labels[w] == null) labels[w] = new int[4];
+            else if (sizes[w] == labels[w].length) labels[w] = Arrays.copyOf(labels[w], sizes[w] << 1);
+            //ranks are added in increasing order, the labels stay sorted
+            labels[w][sizes[w]++] = rank;
+            for (int j = offsets[w]; j < offsets[w + 1]; j++) {
+                int x = targets[j];
+                if (visited[x] != stamp) {
+                    visited[x] = stamp;
+                    queue[tail++] = x;
+                }
+            }
+        }
+    }
+
+    private static boolean covered(int[] label, int size, int[] marks, int stamp) {
+        for (int i = 0; i < size; i++) {
+            if (marks[label[i]] == stamp) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tests if there is a path from a node to another, a node reaching itself
+     * @param from_id int id representing a node
+     * @param to_id int id representing another node
+     * @return true if to_id can be reached from from_id, false if not or if the graph does not contain one of them
+     */
+    public boolean canReach(int from_id, int to_id) {
+        int u = Arrays.binarySearch(ids, from_id);
+        int v = Arrays.binarySearch(ids, to_id);
+        if (u < 0 || v < 0) return false;
+        int cu = component[u];
+        int cv = component[v];
+        if (cu == cv) return true;
+        //components are numbered in reverse topological order, a path only goes to lower numbers
+        if (cu < cv) return false;
+        int i = outOffsets[cu];
+        int j = inOffsets[cv];
+        int iEnd = outOffsets[cu + 1];
+        int jEnd = inOffsets[cv + 1];
+        while (i < iEnd && j < jEnd) {
+            int a = outLabels[i];
+            int b = inLabels[j];
+            if (a == b) return true;
+            if (a < b) i++;
+            else j++;
+        }
+        return false;
+    }
+
+    /**
+     * Tests if there is a path from a node to another, a node reaching itself
+     * @param from a node
+     * @param to another node
+     * @return true if to can be reached from from, false if not or if the graph does not contain one of them
+     */
+    public boolean canReach(Node from, Node to) {
+        return canReach(from.getId(), to.getId());
+    }
+
+    /**
+     * Gets the number of strongly connected components of the graph, the number of nodes of the condensation
+     */
+    public int nbComponents() {
+        return nbComponents;
+    }
+
+    /**
+     * Gets the total size of the labels, the index holding about 4 bytes per entry
+     * @return the number of entries of all the in and out labels
+     */
+    public long labelSize() {
+        return (long) outLabels.length + inLabels.length;
+    }
+}
@@ -0,0 +1,73 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a point-to-point shortest path query : the nodes of a shortest path, its total weight, and the number
+ * of nodes the search settled to find it, which measures the work of the query.
+ */
+public final class Route {
+    private final int[] nodeIds;
+    private final long distance;
+    private final int nbSettled;
+
+    Route(int[] nodeIds, long distance, int nbSettled) {
+        this.nodeIds = nodeIds;
+        this.distance = distance;
+        this.nbSettled = nbSettled;
+    }
+
+    /**
+     * Tells if there is a path
+     * @return true if the destination can be reached from the origin, false if not
+     */
+    public boolean exists() {
+        return nodeIds != null;
+    }
+
+    /**
+     * Gets the total weight of the path
+     * @return the sum of the weights of the edges of a shortest path, -1 if there is no path
+     */
+    public long getDistance() {
+        return distance;
+    }
+
+    /**
+     * Gets the ids of the nodes of the path
+     * @return the ids from the origin to the destination, both included, or null if there is no path
+     */
+    public int[] getNodeIds() {
+        return nodeIds;
+    }
+
+    /**
+     * Gets the nodes of the path
+     * @return the nodes from the origin to the destination, both included, or null if there is no path
+     */
+    public List<Node> getPath() {
+        if (nodeIds == null) return null;
+        List<Node> path = new ArrayList<>(nodeIds.length);
+        for (int id : nodeIds) path.add(new Node(id));
+        return path;
+    }
+
+    /**
+     * Gets the number of nodes whose distance was settled by the search
+     */
+    public int nbSettled() {
+        return nbSettled;
+    }
+
+    @Override
+    public String toString() {
+        if (nodeIds == null) return "no path";
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < nodeIds.length; i++) {
+            if (i > 0) s.append(" -> ");
+            s.append(nodeIds[i]);
+        }
+        return s.append(" (").append(distance).append(')').toString();
+    }
+}
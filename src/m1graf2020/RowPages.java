@@ -0,0 +1,86 @@
+package m1graf2020;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of rows stored in pages, shared with snapshots page by page the same way as {@link IntPages} :
+ * replacing a row after a snapshot copies the references of one page, the rows themselves are not copied
+ */
+final class RowPages {
+    private static final int SHIFT = 12;
+    static final int PAGE = 1 << SHIFT;
+    private static final int MASK = PAGE - 1;
+
+    private int[][][] pages;
+    private int nbPages;
+    //number of shares when each page was allocated or copied : a page of an older generation is also read by a view
+    private int[] pageGeneration;
+    private int generation;
+
+    /**
+     * @param capacity number of rows the array holds at first, at most PAGE
+     */
+    RowPages(int capacity) {
+        pages = new int[][][] {new int[capacity][]};
+        nbPages = 1;
+        pageGeneration = new int[1];
+    }
+
+    private RowPages(int[][][] pages, int nbPages) {
+        this.pages = pages;
+        this.nbPages = nbPages;
+        pageGeneration = new int[pages.length];
+        generation = 1;
+    }
+
+    int[] get(int i) {
+        return pages[i >>> SHIFT][i & MASK];
+    }
+
+    void set(int i, int[] row) {
+        int p = i >>> SHIFT;
+        if (pageGeneration[p] != generation) {
+            pages[p] = pages[p].clone();
+            pageGeneration[p] = generation;
+        }
+        pages[p][i & MASK] = row;
+    }
+
+    /**
+     * Gets the number of rows the array holds
+     */
+    int capacity() {
+        return nbPages == 1 ? pages[0].length : nbPages << SHIFT;
+    }
+
+    /**
+     * Grows the array : the single small page at least doubles until it is a whole page, then pages are added
+     * @param capacity number of rows the array will hold at least
+     */
+    void grow(int capacity) {
+        if (capacity <= capacity()) return;
+        if (nbPages == 1 && pages[0].length < PAGE) {
+            pages[0] = Arrays.copyOf(pages[0], Math.min(PAGE, Math.max(capacity, pages[0].length << 1)));
+            pageGeneration[0] = generation;
+            if (capacity <= PAGE) return;
+        }
+        int count = (int) ((capacity + (long) MASK) >>> SHIFT);
+        if (count > pages.length) {
+            int length = Math.max(count, pages.length << 1);
+            pages = Arrays.copyOf(pages, length);
+            pageGeneration = Arrays.copyOf(pageGeneration, length);
+        }
+        for (; nbPages < count; nbPages++) {
+            pages[nbPages] = new int[PAGE][];
+            pageGeneration[nbPages] = generation;
+        }
+    }
+
+    /**
+     * Gets a read-only view of the current rows, in time proportional to the number of pages
+     */
+    RowPages share() {
+        generation++;
+        return new RowPages(Arrays.copyOf(pages, nbPages), nbPages);
+    }
+}
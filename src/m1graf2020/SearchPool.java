@@ -0,0 +1,46 @@
+package m1graf2020;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Small pool of searches whose arrays are kept between queries, held by the graph or the index they search.
+ * A query takes a search from the pool, or builds one if the pool is empty, and gives it back when it is done : at most
+ * one search per core is kept, the others are dropped. The searches reference their owner and the owner references the
+ * pool, so the whole group is collected with the owner, which a ThreadLocal holding the searches would prevent as long
+ * as the threads which ran queries live.
+ * @param <T> type of the searches, an instance being used by one thread at a time
+ */
+final class SearchPool<T> {
+    private final Supplier<T> factory;
+    private final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * @param factory builds a search when the pool is empty
+     */
+    SearchPool(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Takes a search from the pool, which belongs to the calling thread until it is given back
+     * @return a search kept by a previous query, or a new one
+     */
+    T acquire() {
+        for (int i = 0; i < slots.length(); i++) {
+            T search = slots.getAndSet(i, null);
+            if (search != null) return search;
+        }
+        return factory.get();
+    }
+
+    /**
+     * Gives a search back to the pool, which drops it if it is full
+     * @param search a search taken by acquire(), no longer used by the calling thread
+     */
+    void release(T search) {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, search)) return;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Weighted shortest paths from one or several sources to all the nodes, computed with the Dijkstra algorithm on an
+ * indexed binary heap of compact node indexes, the distances and the parents being kept in primitive arrays.
+ * The weights must not be negative, and an edge without weight costs 1, whether or not the other edges have a
+ * weight. The shortest paths of a graph without any weight are found by a {@link BreadthFirstSearch}, without any heap.
+ */
+public final class ShortestPaths {
+    private final int[] ids;
+    private final long[] distances;
+    private final int[] parents;
+    private final int nbSettled;
+
+    private ShortestPaths(int[] ids, long[] distances, int[] parents, int nbSettled) {
+        this.ids = ids;
+        this.distances = distances;
+        this.parents = parents;
+        this.nbSettled = nbSettled;
+    }
+
+    /**
+     * Computes the shortest paths from several sources to all the nodes
+     * @param g the graph, directed or not
+     * @param source_ids ids of the nodes the paths start from, at distance 0
+     * @return the distances and the parents of the nodes
+     * @throws IllegalArgumentException if the graph does not contain one of the sources or has a negative weight
+     */
+    public static ShortestPaths from(FrozenGraf g, int... source_ids) {
+        int n = g.nbNodes();
+        long[] distances = new long[n];
+        if (g.costs() == null) {
+            BreadthFirstSearch bfs = BreadthFirstSearch.from(g, source_ids);
+            int[] hops = bfs.getDistances();
+            for (int v = 0; v < n; v++) distances[v] = hops[v];
+            return new ShortestPaths(g.ids(), distances, bfs.getParents(), bfs.nbReached());
+        }
+
+        int[] parents = new int[n];
+        Arrays.fill(distances, -1);
+        Arrays.fill(parents, -1);
+        IndexedHeap heap = new IndexedHeap(n);
+        for (int id : source_ids) {
+            int s = g.indexOf(id);
+            if (s < 0) throw new IllegalArgumentException("The graph does not contain the node " + id);
+            distances[s] = 0;
+            heap.push(s, 0);
+        }
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] weights = g.costs();
+        int nbSettled = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            nbSettled++;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                if (weights[k] < 0) throw new IllegalArgumentException("Negative weight on an edge of the node " + g.idAt(u));
+                int v = targets[k];
+                long distance = distances[u] + weights[k];
+                if (distances[v] >= 0 && distance >= distances[v]) continue;
+                distances[v] = distance;
+                parents[v] = u;
+                heap.push(v, distance);
+            }
+        }
+        return new ShortestPaths(g.ids(), distances, parents, nbSettled);
+    }
+
+    /**
+     * Finds a shortest path between two nodes with a bidirectional search, from both ends at once.
+     * The arrays of the search are kept in the graph for the next queries
+     * @param g the graph, directed or not
+     * @param from_id int id of the origin
+     * @param to_id int id of the destination
+     * @return the path, which does not exist if the destination cannot be reached
+     * @throws IllegalArgumentException if the graph does not contain one of the nodes or has a negative weight
+     */
+    public static Route between(FrozenGraf g, int from_id, int to_id) {
+        int s = g.indexOf(from_id);
+        int t = g.indexOf(to_id);
+        if (s < 0) throw new IllegalArgumentException("The graph does not contain the node " + from_id);
+        if (t < 0) throw new IllegalArgumentException("The graph does not contain the node " + to_id);
+        SearchPool<BidirectionalSearch> pool = g.searches();
+        BidirectionalSearch search = pool.acquire();
+        try {
+            return search.run(s, t);
+        } finally {
+            pool.release(search);
+        }
+    }
+
+    /**
+     * Gets the distances of the nodes, the array itself and not a copy
+     * @return the total weight of a shortest path from a source to the node of each compact index,
+     * -1 if it is not reached
+     */
+    public long[] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Gets the parents of the nodes in the shortest path tree, the array itself and not a copy
+     * @return the compact index of the node before the node of each compact index on a shortest path,
+     * -1 for the sources and the nodes not reached
+     */
+    public int[] getParents() {
+        return parents;
+    }
+
+    /**
+     * Gets the compact index of a node, the index of its cell in the distances and parents
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the graph does not contain it
+     */
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Gets the id of the node stored at a compact index
+     * @param index an index between 0 and the number of nodes -1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the distance of a node from the closest source
+     * @param id int id representing a node
+     * @return the total weight of a shortest path from a source, -1 if the node is not reached or does not exist
+     */
+    public long getDistance(int id) {
+        int index = indexOf(id);
+        return index < 0 ? -1 : distances[index];
+    }
+
+    /**
+     * Gets a shortest path from a source to a node, following the parents
+     * @param id int id representing a node
+     * @return the nodes of the path, from the source to the node, or null if the node is not reached or does not exist
+     */
+    public List<Node> getPath(int id) {
+        int index = indexOf(id);
+        if (index < 0 || distances[index] < 0) return null;
+        List<Node> path = new ArrayList<>();
+        for (int u = index; u >= 0; u = parents[u]) path.add(new Node(ids[u]));
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Gets the number of nodes settled, the nodes reached
+     */
+    public int nbSettled() {
+        return nbSettled;
+    }
+}
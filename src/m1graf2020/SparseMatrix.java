@@ -0,0 +1,191 @@
+package m1graf2020;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Adjacency matrix of a graph in sparse formalisms, for numerical code : CSR arrays, COO triplets and Matrix Market files.
+ * Row and column i stand for the node of compact index i (0 to nbRows()-1, in increasing id order), so any id space
+ * is supported, the id of each row is given by idAt(i) or getIds().
+ * The value of an entry is the weight of its edge, or 1 for an edge without weight, as the shortest path searches count it.
+ * Obtained from {@link Graf#toSparseMatrix()} or {@link FrozenGraf#toSparseMatrix()}, the arrays belong to the caller.
+ */
+public final class SparseMatrix {
+    private final int[] ids;
+    private final int[] rowOffsets;
+    private final int[] columns;
+    private final int[] values;
+    private final boolean weighted;
+
+    private SparseMatrix(int[] ids, int[] rowOffsets, int[] columns, int[] values, boolean weighted) {
+        this.ids = ids;
+        this.rowOffsets = rowOffsets;
+        this.columns = columns;
+        this.values = values;
+        this.weighted = weighted;
+    }
+
+    /**
+     * Builds the sparse matrix of a CSR snapshot, an undirected graph gives a symmetric matrix with both triangles.
+     * The arrays of g are copied : the snapshot may be kept and shared by its graph, and the caller owns the matrix
+     * @param g the snapshot
+     * @return the sparse adjacency matrix of g
+     */
+    static SparseMatrix of(FrozenGraf g) {
+        int[] values;
+        if (g.costs() != null) {
+            values = g.costs().clone();
+        } else {
+            values = new int[g.targets().length];
+            Arrays.fill(values, 1);
+        }
+        return new SparseMatrix(g.ids().clone(), g.offsets().clone(), g.targets().clone(), values, g.weights() != null);
+    }
+
+    /**
+     * Gets the number of rows (and columns) of the matrix
+     * @return the number of nodes
+     */
+    public int nbRows() {
+        return ids.length;
+    }
+
+    /**
+     * Gets the number of entries stored in the matrix
+     * @return the number of non zero entries, parallel edges giving one entry each
+     */
+    public int nbNonZeros() {
+        return columns.length;
+    }
+
+    /**
+     * Tells if the values are the weights of the edges
+     * @return true if the graph had weights, false if every value is 1
+     */
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    /**
+     * Gets the row of a node
+     * @param id int id representing a node
+     * @return the index of the row, or -1 if the matrix does not contain the node
+     */
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Gets the id of the node of a row
+     * @param index an index between 0 and nbRows()-1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the id of the node of every row
+     * @return an int array where the i-th element is the id of the node of row i
+     */
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * Gets the row pointers of the CSR formalism : the entries of row i are at positions rowOffsets[i] to rowOffsets[i+1]-1
+     * @return an int array of length nbRows()+1
+     */
+    public int[] getRowOffsets() {
+        return rowOffsets;
+    }
+
+    /**
+     * Gets the column of each entry, sorted within each row
+     * @return an int array of length nbNonZeros()
+     */
+    public int[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the value of each entry
+     * @return an int array of length nbNonZeros(), aligned with getColumns()
+     */
+    public int[] getValues() {
+        return values;
+    }
+
+    /**
+     * Gets the row of each entry, which with getColumns() and getValues() gives the COO (triplet) formalism
+     * @return an int array of length nbNonZeros(), aligned with getColumns()
+     */
+    public int[] getRows() {
+        int[] rows = new int[columns.length];
+        for (int i = 0; i < ids.length; i++) {
+            Arrays.fill(rows, rowOffsets[i], rowOffsets[i + 1], i);
+        }
+        return rows;
+    }
+
+    /**
+     * Exports the matrix in the Matrix Market coordinate formalism
+     * @param matrix file to be written, rows and columns are numbered from 1
+     * @param idFile file where the id of the node of each row is written, one per line, or null
+     * @throws IOException if a file could not be written
+     */
+    public void toMatrixMarketFile(File matrix, File idFile) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(matrix))) {
+            writeHeader(out, ids.length, columns.length, weighted, false);
+            for (int i = 0; i < ids.length; i++) {
+                for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+                    writeEntry(out, i, columns[k], weighted, values[k]);
+                }
+            }
+        }
+        if (idFile != null) writeIds(idFile, ids);
+    }
+
+    /**
+     * Writes the header of a Matrix Market coordinate file
+     * @param n number of rows and columns
+     * @param nnz number of entries which will follow
+     * @param weighted true for integer values, false for a pattern matrix
+     * @param symmetric true if only the lower triangle will follow
+     */
+    static void writeHeader(Writer out, int n, int nnz, boolean weighted, boolean symmetric) throws IOException {
+        out.write("%%MatrixMarket matrix coordinate ");
+        out.write(weighted ? "integer " : "pattern ");
+        out.write(symmetric ? "symmetric\n" : "general\n");
+        out.write(n + " " + n + " " + nnz + "\n");
+    }
+
+    /**
+     * Writes one entry of a Matrix Market coordinate file
+     * @param row row of the entry, from 0
+     * @param col column of the entry, from 0
+     */
+    static void writeEntry(Writer out, int row, int col, boolean weighted, int value) throws IOException {
+        out.write(Integer.toString(row + 1));
+        out.write(' ');
+        out.write(Integer.toString(col + 1));
+        if (weighted) {
+            out.write(' ');
+            out.write(Integer.toString(value));
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Writes the id of the node of each row, one per line
+     */
+    static void writeIds(File idFile, int[] ids) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(idFile))) {
+            for (int id : ids) {
+                out.write(Integer.toString(id));
+                out.write('\n');
+            }
+        }
+    }
+}
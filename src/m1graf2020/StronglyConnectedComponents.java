@@ -0,0 +1,303 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Strongly connected components of a compressed sparse row graph, as a component number for each node in an int array.
+ * They are found with an iterative Tarjan algorithm : the recursion is replaced by an explicit stack of nodes and edge
+ * cursors, so any depth is supported. Large graphs can be solved on all the cores instead, with the forward-backward
+ * and coloring method of {@link ParallelComponents}.
+ * Components are numbered in a reverse topological order of the condensed graph, the order Tarjan completes them :
+ * every edge between two components goes from a higher number to a lower one.
+ */
+public final class StronglyConnectedComponents {
+    private final FrozenGraf g;
+    //component of each compact node index
+    final int[] component;
+    final int count;
+    //nodes grouped by component : the nodes of the component k are members[memberOffsets[k]] to members[memberOffsets[k+1]-1]
+    final int[] memberOffsets;
+    final int[] members;
+
+    StronglyConnectedComponents(FrozenGraf g) {
+        this(g, tarjan(g.nbNodes(), g.offsets(), g.targets()));
+    }
+
+    /**
+     * Groups the nodes by component
+     * @param component component of each compact node index, numbered from 0 in a reverse topological order
+     */
+    private StronglyConnectedComponents(FrozenGraf g, int[] component) {
+        int n = component.length;
+        this.g = g;
+        this.component = component;
+        int max = -1;
+        for (int c : component) max = Math.max(max, c);
+        count = max + 1;
+        memberOffsets = new int[count + 1];
+        for (int u = 0; u < n; u++) memberOffsets[component[u] + 1]++;
+        for (int k = 0; k < count; k++) memberOffsets[k + 1] += memberOffsets[k];
+        members = new int[n];
+        int[] cursor = memberOffsets.clone();
+        for (int u = 0; u < n; u++) members[cursor[component[u]]++] = u;
+    }
+
+    /**
+     * Finds the strongly connected components of a graph with the iterative Tarjan algorithm, in the calling thread
+     * @param g the graph, directed or not
+     * @return the components
+     */
+    public static StronglyConnectedComponents of(FrozenGraf g) {
+        return new StronglyConnectedComponents(g);
+    }
+
+    /**
+     * Finds the strongly connected components of a graph
+     * @param g the graph, directed or not
+     * @param parallel true to find them on all the cores with the forward-backward and coloring method,
+     * false to run the Tarjan algorithm in the calling thread
+     * @return the components, numbered the same way by both methods
+     */
+    public static StronglyConnectedComponents of(FrozenGraf g, boolean parallel) {
+        if (!parallel) return new StronglyConnectedComponents(g);
+        return new StronglyConnectedComponents(g, renumber(g, ParallelComponents.representatives(g)));
+    }
+
+    private static int[] tarjan(int n, int[] offsets, int[] targets) {
+        int[] index = new int[n];
+        Arrays.fill(index, -1);
+        int[] low = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] calls = new int[n];
+        int[] cursors = new int[n];
+        int[] component = new int[n];
+        int counter = 0;
+        int components = 0;
+        int sp = 0;
+        for (int s = 0; s < n; s++) {
+            if (index[s] >= 0) continue;
+            index[s] = low[s] = counter++;
+            stack[sp++] = s;
+            onStack[s] = true;
+            calls[0] = s;
+            cursors[0] = offsets[s];
+            int cp = 1;
+            while (cp > 0) {
+                int u = calls[cp -1];
+                if (cursors[cp -1] < offsets[u + 1]) {
+                    int v = targets[cursors[cp -1]++];
+                    if (index[v] < 0) {
+                        index[v] = low[v] = counter++;
+                        stack[sp++] = v;
+                        onStack[v] = true;
+                        calls[cp] = v;
+                        cursors[cp] = offsets[v];
+                        cp++;
+                    } else if (onStack[v] && index[v] < low[u]) {
+                        low[u] = index[v];
+                    }
+                    continue;
+                }
+                //all the successors of u are visited
+                cp--;
+                if (cp > 0 && low[u] < low[calls[cp -1]]) low[calls[cp -1]] = low[u];
+                if (low[u] == index[u]) {
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        onStack[w] = false;
+                        component[w] = components;
+                    } while (w != u);
+                    components++;
+                }
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Numbers the components found by the parallel method in a reverse topological order, by removing the components
+     * without predecessor one after the other (Kahn algorithm) on the condensed graph
+     * @param representative a node of the component of each node
+     * @return the component of each node
+     */
+    private static int[] renumber(FrozenGraf g, int[] representative) {
+        int n = representative.length;
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] component = new int[n];
+        int[] dense = new int[n];
+        Arrays.fill(dense, -1);
+        int count = 0;
+        for (int u = 0; u < n; u++) {
+            int r = representative[u];
+            if (dense[r] < 0) dense[r] = count++;
+            component[u] = dense[r];
+        }
+        StronglyConnectedComponents unordered = new StronglyConnectedComponents(g, component);
+        int[] inDegrees = new int[count];
+        for (int u = 0; u < n; u++) {
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                if (component[targets[k]] != component[u]) inDegrees[component[targets[k]]]++;
+            }
+        }
+        int[] queue = new int[count];
+        int tail = 0;
+        for (int c = 0; c < count; c++) {
+            if (inDegrees[c] == 0) queue[tail++] = c;
+        }
+        //the first component of the topological order gets the highest number
+        int[] number = new int[count];
+        for (int head = 0; head < tail; head++) {
+            int c = queue[head];
+            number[c] = count - 1 - head;
+            for (int i = unordered.memberOffsets[c]; i < unordered.memberOffsets[c + 1]; i++) {
+                int u = unordered.members[i];
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int d = component[targets[k]];
+                    if (d != c && --inDegrees[d] == 0) queue[tail++] = d;
+                }
+            }
+        }
+        for (int u = 0; u < n; u++) component[u] = number[component[u]];
+        return component;
+    }
+
+    /**
+     * Builds the condensed graph : one node per component, whose id is the number of the component, and one edge from
+     * a component to another if an edge joins their nodes. A component lying on a cycle has a loop
+     * @param offsets row offsets of the graph the components were found in
+     * @param targets row targets of the graph the components were found in
+     * @return the condensed graph, a directed acyclic graph apart from the loops
+     */
+    FrozenGraf condense(int[] offsets, int[] targets) {
+        int[] ids = new int[count];
+        int[] dagOffsets = new int[count + 1];
+        int[] dagTargets = new int[16];
+        int[] seen = new int[count];
+        int m = 0;
+        for (int k = 0; k < count; k++) {
+            ids[k] = k;
+            for (int i = memberOffsets[k]; i < memberOffsets[k + 1]; i++) {
+                int u = members[i];
+                for (int j = offsets[u]; j < offsets[u + 1]; j++) {
+                    int d = component[targets[j]];
+                    //an edge inside the component, a loop or part of a cycle, gives the loop of the component
+                    if (seen[d] == k + 1) continue;
+                    seen[d] = k + 1;
+                    if (m == dagTargets.length) dagTargets = Arrays.copyOf(dagTargets, m << 1);
+                    dagTargets[m++] = d;
+                }
+            }
+            Arrays.sort(dagTargets, dagOffsets[k], m);
+            dagOffsets[k + 1] = m;
+        }
+        return new FrozenGraf(ids, dagOffsets, Arrays.copyOf(dagTargets, m), null, m, true);
+    }
+
+    /**
+     * Builds the condensed graph as a new Graf : the node of id k+1 stands for the component k, and there is one
+     * edge from a component to another if an edge joins their nodes. It is a directed acyclic graph, without loops
+     * @return a new directed graph with one node per component
+     */
+    public Graf getCondensation() {
+        FrozenGraf dag = condense(g.offsets(), g.targets());
+        GrafBuilder builder = new GrafBuilder(dag.nbEdges());
+        int[] offsets = dag.offsets();
+        int[] targets = dag.targets();
+        for (int k = 0; k < count; k++) {
+            builder.addNode(k + 1);
+            for (int j = offsets[k]; j < offsets[k + 1]; j++) {
+                if (targets[j] != k) builder.addEdge(k + 1, targets[j] + 1);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the component of every node, the array itself and not a copy
+     * @return the number of the component of the node of each compact index, between 0 and nbComponents()-1
+     */
+    public int[] getComponents() {
+        return component;
+    }
+
+    /**
+     * Gets the number of components
+     */
+    public int nbComponents() {
+        return count;
+    }
+
+    /**
+     * Gets the compact index of a node, the index of its cell in the components
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the graph does not contain it
+     */
+    public int indexOf(int id) {
+        return g.indexOf(id);
+    }
+
+    /**
+     * Gets the id of the node stored at a compact index
+     * @param index an index between 0 and the number of nodes -1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return g.idAt(index);
+    }
+
+    /**
+     * Gets the component of a node
+     * @param id int id representing a node
+     * @return the number of the component of the node, -1 if the graph does not contain it
+     */
+    public int getComponent(int id) {
+        int index = g.indexOf(id);
+        return index < 0 ? -1 : component[index];
+    }
+
+    /**
+     * Gets the number of nodes of a component
+     * @param k number of the component
+     */
+    public int size(int k) {
+        return memberOffsets[k + 1] - memberOffsets[k];
+    }
+
+    /**
+     * Gets the nodes of a component
+     * @param k number of the component
+     * @return the nodes of the component, in increasing id order
+     */
+    public List<Node> getNodes(int k) {
+        List<Node> nodes = new ArrayList<>(size(k));
+        for (int i = memberOffsets[k]; i < memberOffsets[k + 1]; i++) nodes.add(new Node(g.idAt(members[i])));
+        return nodes;
+    }
+
+    /**
+     * Tells if a component lies on a cycle : it has several nodes, or a single node with a loop
+     * @param k number of the component
+     * @return true if there is a path of at least one edge from each node of the component to itself
+     */
+    public boolean isCyclic(int k) {
+        if (size(k) > 1) return true;
+        int id = g.idAt(members[memberOffsets[k]]);
+        return g.find(id, id) >= 0;
+    }
+
+    /**
+     * Tells if the graph has a cycle, a component lying on a cycle
+     * @return true if a node can reach itself through a path of at least one edge
+     */
+    public boolean hasCycle() {
+        for (int k = 0; k < count; k++) {
+            if (isCyclic(k)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,201 @@
+package m1graf2020;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Topological order of a compressed sparse row graph, found with the Kahn algorithm run level by level : the level 0
+ * holds the nodes without predecessor, and the level k+1 the nodes whose last predecessor is in the level k, so the
+ * level of a node is the number of edges of the longest path ending at it. The order lists the nodes level after
+ * level, and the nodes of a level do not depend on each other : a scheduler can run them at once, wave after wave.
+ * The in-degrees are read from the graph in O(1) per node, so the whole order costs O(V + E).
+ * If the graph has a cycle, the nodes on a cycle or reached from one are never freed : they have no level and are
+ * not in the order, and a cycle can be read with getCycle().
+ */
+public final class TopologicalOrder {
+    private final FrozenGraf g;
+    //compact indexes of the nodes ordered, level after level
+    private final int[] order;
+    //the nodes of the level k are order[levelOffsets[k]] to order[levelOffsets[k+1]-1]
+    private final int[] levelOffsets;
+    //level of each compact node index, -1 if the node is on a cycle or reached from one
+    private final int[] levels;
+
+    private TopologicalOrder(FrozenGraf g) {
+        this.g = g;
+        int n = g.nbNodes();
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] remaining = new int[n];
+        if (g.isDirected()) {
+            System.arraycopy(g.inDegrees(), 0, remaining, 0, n);
+        } else {
+            //both copies of an edge are stored, a node has as many predecessors as successors
+            for (int u = 0; u < n; u++) remaining[u] = offsets[u + 1] - offsets[u];
+        }
+        levels = new int[n];
+        Arrays.fill(levels, -1);
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int u = 0; u < n; u++) {
+            if (remaining[u] == 0) {
+                levels[u] = 0;
+                queue[tail++] = u;
+            }
+        }
+        int[] starts = new int[16];
+        int nbLevels = 0;
+        //the queue is filled level after level : a level ends where the nodes freed by the previous one end
+        for (int head = 0, end = tail; head < tail; end = tail) {
+            if (nbLevels + 1 == starts.length) starts = Arrays.copyOf(starts, starts.length << 1);
+            starts[nbLevels++] = head;
+            for (; head < end; head++) {
+                int u = queue[head];
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int v = targets[k];
+                    if (--remaining[v] == 0) {
+                        levels[v] = nbLevels;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+        }
+        starts[nbLevels] = tail;
+        order = tail == n ? queue : Arrays.copyOf(queue, tail);
+        levelOffsets = Arrays.copyOf(starts, nbLevels + 1);
+    }
+
+    /**
+     * Sorts the nodes of a graph in a topological order, grouped by level
+     * @param g the graph, directed or not : an undirected graph with an edge has a cycle
+     * @return the order and the levels of the nodes
+     */
+    public static TopologicalOrder of(FrozenGraf g) {
+        return new TopologicalOrder(g);
+    }
+
+    /**
+     * Gets the nodes in a topological order, the array itself and not a copy : for every edge u -> v, u comes before v.
+     * The nodes are grouped by level, the nodes of the level k are at the positions getLevelOffsets()[k] to
+     * getLevelOffsets()[k+1]-1
+     * @return the compact indexes of the nodes, without the nodes on a cycle or reached from one
+     */
+    public int[] getOrder() {
+        return order;
+    }
+
+    /**
+     * Gets the start of every level in the order, the array itself and not a copy
+     * @return nbLevels()+1 positions in the order, the last one being the number of nodes ordered
+     */
+    public int[] getLevelOffsets() {
+        return levelOffsets;
+    }
+
+    /**
+     * Gets the level of every node, the array itself and not a copy
+     * @return the number of edges of the longest path ending at the node of each compact index,
+     * -1 if the node is on a cycle or reached from one
+     */
+    public int[] getLevels() {
+        return levels;
+    }
+
+    /**
+     * Gets the number of levels, one more than the number of edges of the longest path
+     */
+    public int nbLevels() {
+        return levelOffsets.length - 1;
+    }
+
+    /**
+     * Gets the level of a node
+     * @param id int id representing a node
+     * @return the number of edges of the longest path ending at the node, -1 if the graph does not contain it or the
+     * node is on a cycle or reached from one
+     */
+    public int getLevel(int id) {
+        int index = g.indexOf(id);
+        return index < 0 ? -1 : levels[index];
+    }
+
+    /**
+     * Gets the nodes of a level, which can be processed at once when the previous levels are done
+     * @param level a level between 0 and nbLevels()-1
+     * @return the nodes of the level, in the order they were freed
+     */
+    public List<Node> getNodes(int level) {
+        List<Node> nodes = new ArrayList<>(levelOffsets[level + 1] - levelOffsets[level]);
+        for (int i = levelOffsets[level]; i < levelOffsets[level + 1]; i++) nodes.add(new Node(g.idAt(order[i])));
+        return nodes;
+    }
+
+    /**
+     * Gets the topological order as a list of nodes
+     * @return the nodes ordered, level after level
+     */
+    public List<Node> getNodes() {
+        List<Node> nodes = new ArrayList<>(order.length);
+        for (int u : order) nodes.add(new Node(g.idAt(u)));
+        return nodes;
+    }
+
+    /**
+     * Gets the compact index of a node, the index of its cell in the levels
+     * @param id int id representing a node
+     * @return the index of the node, or -1 if the graph does not contain it
+     */
+    public int indexOf(int id) {
+        return g.indexOf(id);
+    }
+
+    /**
+     * Gets the id of the node stored at a compact index
+     * @param index an index between 0 and the number of nodes -1
+     * @return the int id of the node
+     */
+    public int idAt(int index) {
+        return g.idAt(index);
+    }
+
+    /**
+     * Tells if the graph has a cycle, in which case some nodes are not ordered
+     * @return true if a node can reach itself through a path of at least one edge
+     */
+    public boolean hasCycle() {
+        return order.length < levels.length;
+    }
+
+    /**
+     * Finds a cycle of the graph. Every node left out of the order has a predecessor left out too, so walking back
+     * through them from any of them ends up going around a cycle
+     * @return the nodes of a cycle in the order of its edges, the first node not being repeated at the end,
+     * or an empty list if the graph has no cycle
+     */
+    public List<Node> getCycle() {
+        if (!hasCycle()) return Collections.emptyList();
+        FrozenGraf reverse = g.getReverse();
+        int[] inOffsets = reverse.offsets();
+        int[] sources = reverse.targets();
+        //position of each node in the walk, -1 if it was not met
+        int[] position = new int[levels.length];
+        Arrays.fill(position, -1);
+        int[] walk = new int[levels.length];
+        int u = 0;
+        while (levels[u] >= 0) u++;
+        int length = 0;
+        while (position[u] < 0) {
+            position[u] = length;
+            walk[length++] = u;
+            int k = inOffsets[u];
+            while (levels[sources[k]] >= 0) k++;
+            u = sources[k];
+        }
+        //the walk went backwards : the cycle is the end of the walk from the node met again, reversed
+        List<Node> cycle = new ArrayList<>(length - position[u]);
+        for (int i = length - 1; i >= position[u]; i--) cycle.add(new Node(g.idAt(walk[i])));
+        return cycle;
+    }
+}
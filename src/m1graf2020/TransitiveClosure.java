@@ -0,0 +1,126 @@
+package m1graf2020;
+
+import java.util.stream.IntStream;
+
+/**
+ * Computes the transitive closure of a graph as a BitMatrix : the cell (u, v) is set if there is a path of at least
+ * one edge from u to v, so a node has a loop in the closure only if it lies on a cycle.
+ * The strongly connected components are condensed first, their nodes reaching the same nodes, then the rows of the
+ * components are computed as bitsets in reverse topological order, each one being the union of the rows of its
+ * successors. Components with the same height in the condensed graph do not depend on each other, so the rows of a
+ * height are computed in parallel on the fork-join common pool.
+ */
+public final class TransitiveClosure {
+    //below this number of row words, a height of the condensed graph is computed in the calling thread
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private TransitiveClosure() {
+    }
+
+    /**
+     * Computes the transitive closure of a graph, on all the cores
+     * @param g the graph, directed or not
+     * @return a matrix where (u, v) is set if there is a path from the node of index u to the node of index v,
+     * rows and columns in increasing id order
+     * @throws IllegalArgumentException if the graph has too many nodes for a bit matrix
+     */
+    public static BitMatrix of(FrozenGraf g) {
+        return of(g, true);
+    }
+
+    /**
+     * Computes the transitive closure of a graph
+     * @param g the graph, directed or not
+     * @param parallel true to compute the rows on several threads, false to compute them in the calling thread
+     * @return a matrix where (u, v) is set if there is a path from the node of index u to the node of index v,
+     * rows and columns in increasing id order
+     * @throws IllegalArgumentException if the graph has too many nodes for a bit matrix
+     */
+    public static BitMatrix of(FrozenGraf g, boolean parallel) {
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(g);
+        int c = scc.count;
+        int[] memberOffsets = scc.memberOffsets;
+        int[] members = scc.members;
+        FrozenGraf dag = scc.condense(g.offsets(), g.targets());
+        int[] dagOffsets = dag.offsets();
+        int[] successors = dag.targets();
+        //the row of a component on a cycle holds its own nodes, the condensed graph has a loop on it
+        boolean[] cyclic = new boolean[c];
+        for (int k = 0; k < c; k++) cyclic[k] = dag.find(k, k) >= 0;
+
+        //height of each component : 0 for the sinks, else one more than its highest successor
+        int[] height = new int[c];
+        int maxHeight = 0;
+        for (int k = 0; k < c; k++) {
+            int h = -1;
+            for (int j = dagOffsets[k]; j < dagOffsets[k + 1]; j++) {
+                if (successors[j] != k) h = Math.max(h, height[successors[j]]);
+            }
+            height[k] = h + 1;
+            maxHeight = Math.max(maxHeight, h + 1);
+        }
+        int[] heightOffsets = new int[maxHeight + 2];
+        for (int k = 0; k < c; k++) heightOffsets[height[k] + 1]++;
+        for (int h = 0; h <= maxHeight; h++) heightOffsets[h + 1] += heightOffsets[h];
+        int[] byHeight = new int[c];
+        int[] cursor = heightOffsets.clone();
+        for (int k = 0; k < c; k++) byHeight[cursor[height[k]]++] = k;
+
+        BitMatrix closure = new BitMatrix(g.ids());
+        long[] bits = closure.bits();
+        int words = closure.words();
+        for (int h = 0; h <= maxHeight; h++) {
+            int from = heightOffsets[h];
+            int to = heightOffsets[h + 1];
+            IntStream rows = IntStream.range(from, to);
+            if (parallel && to - from > 1 && (long) (to - from) * words >= PARALLEL_THRESHOLD) rows = rows.parallel();
+            rows.forEach(i -> {
+                int k = byHeight[i];
+                int row = members[memberOffsets[k]] * words;
+                for (int j = dagOffsets[k]; j < dagOffsets[k + 1]; j++) {
+                    int d = successors[j];
+                    if (d == k) continue;
+                    int first = members[memberOffsets[d]];
+                    int other = first * words;
+                    for (int w = 0; w < words; w++) bits[row + w] |= bits[other + w];
+                    if (!cyclic[d]) bits[row + (first >>> 6)] |= 1L << first;
+                }
+                if (cyclic[k]) {
+                    for (int j = memberOffsets[k]; j < memberOffsets[k + 1]; j++) {
+                        bits[row + (members[j] >>> 6)] |= 1L << members[j];
+                    }
+                }
+            });
+        }
+
+        //the other nodes of a component copy its row
+        IntStream copies = IntStream.range(0, c).filter(k -> memberOffsets[k + 1] - memberOffsets[k] > 1);
+        if (parallel) copies = copies.parallel();
+        copies.forEach(k -> {
+            int row = members[memberOffsets[k]] * words;
+            for (int j = memberOffsets[k] + 1; j < memberOffsets[k + 1]; j++) {
+                System.arraycopy(bits, row, bits, members[j] * words, words);
+            }
+        });
+        return closure;
+    }
+
+    /**
+     * Builds the graph of a transitive closure, with one edge for each pair of nodes joined by a path
+     * @param closure the transitive closure, as computed by {@link #of(FrozenGraf)}
+     * @param directed false to build an UndirectedGraf, with one edge for each pair of symmetric cells
+     * @return a new Graf, or a new UndirectedGraf, holding all the nodes of the matrix
+     */
+    static Graf toGraf(BitMatrix closure, boolean directed) {
+        int n = closure.size();
+        GrafBuilder builder = new GrafBuilder();
+        for (int i = 0; i < n; i++) {
+            int id = closure.idAt(i);
+            builder.addNode(id);
+            for (int j = closure.nextSetBit(i, directed ? 0 : i); j >= 0; j = closure.nextSetBit(i, j + 1)) {
+                builder.addEdge(id, closure.idAt(j));
+            }
+        }
+        return directed ? builder.build() : builder.buildUndirected();
+    }
+}
@@ -0,0 +1,203 @@
+package m1graf2020;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy breadth first or depth first traversal of a graph from a node, giving the ids of the nodes one at a time, in
+ * the order they are discovered. Nothing is explored beyond the node last returned, so stopping early only touches
+ * the nodes near the source : the nodes seen are kept in an open addressing set and the queue or stack in int arrays,
+ * both growing with the nodes seen and not with the graph, and no object is allocated per node.
+ * The traversal reads the rows of the graph as it goes, the graph must not be modified until it ends, use a
+ * {@link Graf#snapshot()} to traverse a graph being modified.
+ * Obtained from {@link Graf#bfsFrom(int)} or {@link Graf#dfsFrom(int)}, it can be set up until the first node is read.
+ */
+public final class Traversal implements PrimitiveIterator.OfInt {
+    /**
+     * Callback called for each node returned by a traversal
+     */
+    public interface Visitor {
+        /**
+         * @param id int id of the node
+         * @param depth distance from the source breadth first, depth in the depth first tree depth first
+         */
+        void visit(int id, int depth);
+    }
+
+    private final Graf g;
+    private final boolean depthFirst;
+    //depth of each internal index seen
+    private final IntIntMap seen = new IntIntMap();
+    //queue breadth first, from head to tail, or stack depth first, from 0 to top, the depth of a node being its position
+    private int[] nodes = new int[16];
+    private int[] depths;
+    private int[] cursors;
+    private int head;
+    private int tail;
+    private int top;
+    private boolean pending;
+
+    private int maxDepth = Integer.MAX_VALUE;
+    private IntPredicate stop;
+    private Visitor visitor;
+    private boolean started;
+    private boolean stopped;
+    private int depth = -1;
+
+    Traversal(Graf g, int source, boolean depthFirst) {
+        this.g = g;
+        this.depthFirst = depthFirst;
+        seen.put(source, 0);
+        nodes[0] = source;
+        if (depthFirst) {
+            cursors = new int[16];
+            top = 0;
+            pending = true;
+        } else {
+            depths = new int[16];
+            tail = 1;
+        }
+    }
+
+    /**
+     * Does not go further than a distance from the source, or a depth in the depth first tree
+     * @param maxDepth the greatest depth of a node returned, 0 to only return the source
+     * @return this traversal
+     */
+    public Traversal maxDepth(int maxDepth) {
+        checkNotStarted();
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Ends the traversal at the first node matching a predicate, which is the last node returned
+     * @param stop predicate on the ids of the nodes
+     * @return this traversal
+     */
+    public Traversal stopWhen(IntPredicate stop) {
+        checkNotStarted();
+        this.stop = stop;
+        return this;
+    }
+
+    /**
+     * Calls a visitor for each node returned, with its depth
+     * @param visitor the callback
+     * @return this traversal
+     */
+    public Traversal visitor(Visitor visitor) {
+        checkNotStarted();
+        this.visitor = visitor;
+        return this;
+    }
+
+    private void checkNotStarted() {
+        if (started) throw new IllegalStateException("The traversal has already started");
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (stopped) return false;
+        if (!depthFirst) return head < tail;
+        if (pending) return true;
+        //depth first, the next node is the first successor not seen yet of the deepest node having one
+        while (top >= 0) {
+            int u = nodes[top];
+            if (top < maxDepth && cursors[top] < g.outDeg.get(u)) {
+                int v = g.outTargets.get(u)[cursors[top]++];
+                if (seen.get(v) == IntIntMap.MISSING) {
+                    seen.put(v, top + 1);
+                    if (++top == nodes.length) {
+                        nodes = Arrays.copyOf(nodes, top << 1);
+                        cursors = Arrays.copyOf(cursors, top << 1);
+                    }
+                    nodes[top] = v;
+                    cursors[top] = 0;
+                    pending = true;
+                    return true;
+                }
+            } else {
+                top--;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int nextInt() {
+        if (!hasNext()) throw new NoSuchElementException();
+        started = true;
+        int u;
+        if (depthFirst) {
+            pending = false;
+            u = nodes[top];
+            depth = top;
+        } else {
+            u = nodes[head];
+            depth = depths[head++];
+            if (depth < maxDepth) {
+                for (int k = 0; k < g.outDeg.get(u); k++) {
+                    int v = g.outTargets.get(u)[k];
+                    if (seen.get(v) == IntIntMap.MISSING) {
+                        seen.put(v, depth + 1);
+                        enqueue(v, depth + 1);
+                    }
+                }
+            }
+        }
+        int id = g.registry.idAt(u);
+        if (visitor != null) visitor.visit(id, depth);
+        if (stop != null && stop.test(id)) stopped = true;
+        return id;
+    }
+
+    private void enqueue(int u, int d) {
+        if (tail == nodes.length) {
+            //the queue is compacted before growing
+            int size = tail - head;
+            int[] queue = size << 1 > nodes.length ? new int[nodes.length << 1] : nodes;
+            int[] queueDepths = queue == nodes ? depths : new int[queue.length];
+            System.arraycopy(nodes, head, queue, 0, size);
+            System.arraycopy(depths, head, queueDepths, 0, size);
+            nodes = queue;
+            depths = queueDepths;
+            head = 0;
+            tail = size;
+        }
+        nodes[tail] = u;
+        depths[tail++] = d;
+    }
+
+    /**
+     * Gets the depth of the node last returned
+     * @return the distance from the source breadth first, the depth in the depth first tree depth first,
+     * -1 if no node was returned
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Gets the number of nodes discovered so far, returned or waiting to be
+     */
+    public int nbSeen() {
+        return seen.size();
+    }
+
+    /**
+     * Gives the remaining nodes of the traversal as a lazy sequential stream, for instance
+     * {@code g.bfsFrom(s).stream().filter(p).findFirst()} to find the closest node matching p
+     * @return a stream of the ids of the nodes, in the order of the traversal
+     */
+    public IntStream stream() {
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+}
@@ -5,6 +5,8 @@ import java.util.*;
 
 /**
  * Use inEdge and outEdge
+ * Each edge is stored in the rows of both its nodes, so the successors of a node are all its neighbours
+ * and the predecessor rows are not used.
  */
 public class UndirectedGraf extends Graf{
 
@@ -18,16 +20,16 @@ public class UndirectedGraf extends Graf{
      */
     public UndirectedGraf(int... sa) {
         super(sa);
+    }
 
-        int from = 1;
-        for (int i = 0; i < sa.length; i++)  {
-            if (i == sa.length -1) break;
-            if (sa[i] != 0) {
-                if(!adjList.get(new Node(sa[i])).contains(new Node(from))) adjList.get(new Node(sa[i])).add(new Node(from));
-            } else {
-                addNode(++from);
-            }
-        }
+    /**
+     * Builds an undirected weighted graph from an int array representing a Successor Array Formalism
+     * @param sa an int array in the Successor Array formalism
+     * @param weights an int array as long as sa, weights[i] is the weight of the edge to sa[i] (ignored where sa[i] is 0),
+     *                or null for an unweighted graph
+     */
+    public UndirectedGraf(int[] sa, int[] weights) {
+        super(sa, weights);
     }
 
     /**
@@ -36,68 +38,54 @@ public class UndirectedGraf extends Graf{
      * @throws IOException if the file was not found or if it is not .dot
      */
     public UndirectedGraf(File file) throws IOException {
-        String extension = "";
-        int i = file.getName().lastIndexOf('.');
-        if (i > 0) {
-            extension = file.getName().substring(i+1);
-        }
-        if (!extension.equals("dot")) throw new IOException("File is not .dot");
-        adjList = new TreeMap<>();
-        edgeList = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        reader.readLine();
-        String line = reader.readLine();
-        while (line != null) {
-            if (line.contains("}")) break;
-            else {
-                int node_id = Integer.parseInt(String.valueOf(line.charAt(1)));
-                addNode(node_id);
-                int index = 6;
-                while (index < line.length()) {
-                    addEdge(node_id, Integer.parseInt(String.valueOf(line.charAt(index))));
-                    index += 3;
-                }
-                line = reader.readLine();
-            }
-        }
+        super(file);
     }
 
     /**
-     * Adds an edge fromm one node to another, adds the nodes to the graph if needed
-     * @param from a node
-     * @param to another node
+     * Stores a new edge id in the rows of both its nodes
+     * @param e id of the edge
      */
-    public void addEdge(Node from, Node to) {
-        if(!existsNode(from)) addNode(from);
-        if(!existsNode(to)) addNode(to);
-        edgeList.add(new Edge(from, to));
-        getSuccessors(from).add(to);
-        getSuccessors(to).add(from);
+    @Override
+    void linkEdge(int e) {
+        edgeOutSlot.set(e, appendToRow(edgeFrom.get(e), edgeTo.get(e), e));
+        edgeToSlot.set(e, appendToRow(edgeTo.get(e), edgeFrom.get(e), e));
     }
 
     /**
-     * Adds an edge fromm one node to another, adds the nodes to the graph if needed
-     * @param from_id int id representing a node
-     * @param to_id int id representing another node
+     * Removes an edge id from the rows of both its nodes
+     * @param e id of the edge
      */
-    public void addEdge(int from_id, int to_id) {
-        if(getNode(from_id) == null) addNode(from_id);
-        if(getNode(to_id) == null) addNode(to_id);
-        edgeList.add(new Edge(new Node(from_id), new Node(to_id)));
-        getSuccessors(from_id).add(new Node(to_id));
-        getSuccessors(to_id).add(new Node(from_id));
+    @Override
+    void unlinkEdge(int e) {
+        removeFromRow(edgeFrom.get(e), edgeOutSlot.get(e));
+        removeFromRow(edgeTo.get(e), edgeToSlot.get(e));
     }
 
     /**
-     * Adds an edge fromm one node to another, adds the nodes to the graph if needed
-     * @param e edge to be added
+     * Removes an edge id from the rows of those of its nodes which are not being removed
+     * @param e id of the edge
+     * @param removed removed[u] is true if the node of internal index u is being removed
      */
-    public void addEdge(Edge e) {
-        if(getNode(e.getFrom().getId()) == null) addNode(e.getFrom());
-        if(getNode(e.getTo().getId()) == null) addNode(e.getTo());
-        edgeList.add(e);
-        getSuccessors(e.getFrom()).add(e.getTo());
-        getSuccessors(e.getTo()).add(e.getFrom());
+    @Override
+    void unlinkEdge(int e, boolean[] removed) {
+        if (!removed[edgeFrom.get(e)]) removeFromRow(edgeFrom.get(e), edgeOutSlot.get(e));
+        if (!removed[edgeTo.get(e)]) removeFromRow(edgeTo.get(e), edgeToSlot.get(e));
+    }
+
+    /**
+     * Packs the internal indexes of the two nodes of an edge, smallest first, so both directions share the same key
+     */
+    @Override
+    long pairKey(int u, int v) {
+        return u < v ? super.pairKey(u, v) : super.pairKey(v, u);
+    }
+
+    /**
+     * The row of a node already holds all its incident edges, they are deleted with its leaving edges
+     * @param u internal index of the node
+     */
+    @Override
+    void removeInEdges(int u) {
     }
 
     /**
@@ -152,10 +140,12 @@ public class UndirectedGraf extends Graf{
      */
     public List<Edge> getIncidentEdges(int id) {
         List<Edge> incidentEdges = new ArrayList<>();
-        for (Edge e : edgeList) {
-            if (e.getTo().getId() == id || e.getFrom().getId() == id) {
-                incidentEdges.add(e);
-            }
+        int u = indexOf(id);
+        if (u == FREE) return incidentEdges;
+        for (int k = 0; k < outDeg.get(u); k++) {
+            int e = outEdges.get(u)[k];
+            //a self loop is stored twice in the row, it is listed once
+            if (edgeFrom.get(e) != edgeTo.get(e) || edgeOutSlot.get(e) == k) incidentEdges.add(toEdge(e));
         }
         return incidentEdges;
     }
@@ -166,7 +156,7 @@ public class UndirectedGraf extends Graf{
      * @return an int representing the number of edges coming to a node
      */
     public int inDegree(Node n) {
-        return getSuccessors(n).size();
+        return outDegree(n);
     }
 
     /**
@@ -175,7 +165,7 @@ public class UndirectedGraf extends Graf{
      * @return an int representing the number of edges coming to a node
      */
     public int inDegree(int id) {
-        return getSuccessors(id).size();
+        return outDegree(id);
     }
 
     /**
@@ -184,7 +174,7 @@ public class UndirectedGraf extends Graf{
      * @return an int representing the number of edges both leaving and coming to a node
      */
     public int degree(Node n) {
-        return getSuccessors(n).size();
+        return outDegree(n);
     }
 
     /**
@@ -193,7 +183,7 @@ public class UndirectedGraf extends Graf{
      * @return an int representing the number of edges both leaving and coming to a node
      */
     public int degree(int id) {
-        return getSuccessors(id).size();
+        return outDegree(id);
     }
 
     /**
@@ -204,41 +194,65 @@ public class UndirectedGraf extends Graf{
         return this;
     }
 
+    /**
+     * Builds the transitive closure of the graph : a copy of the graph where the nodes of each connected component
+     * are all linked, with a loop on each node having a neighbour. The graph itself is not modified
+     * @return a new graph with an edge for each pair of nodes joined by a path
+     */
     public UndirectedGraf getTransitiveClosure() {
-        UndirectedGraf g = this;
-        UndirectedGraf reverse = getReverse();
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-            List<Node> predecessors = reverse.getSuccessors(entry.getKey());
-            for (Node p : predecessors) {
-                for (Node s : entry.getValue()) {
-                    g.addEdge(p, s);
-                }
-            }
-        }
-        return g;
+        return (UndirectedGraf) TransitiveClosure.toGraf(getTransitiveClosureMatrix(), false);
+    }
+
+    /**
+     * Takes a read-only point-in-time view of the graph, sharing its pages, see {@link Graf#snapshot()} for the costs
+     * @return a snapshot of the current nodes and edges of the graph
+     */
+    public UndirectedGraf snapshot() {
+        return (UndirectedGraf) super.snapshot();
+    }
+
+    @Override
+    Graf emptyGraf() {
+        return new UndirectedGraf();
+    }
+
+    /**
+     * Builds an immutable compressed sparse row snapshot of the graph, for read-heavy workloads.
+     * The snapshot is kept until the graph is modified, so the next calls return the same one
+     * @return a FrozenGraf holding the current nodes and edges of the graph
+     */
+    public FrozenGraf freeze() {
+        return freeze(false);
+    }
+
+    /**
+     * Exports the adjacency matrix of the graph in a symmetric Matrix Market coordinate file, each edge written once
+     * in the lower triangle, weights as values and 1 for an edge without weight
+     * @param matrix file to be written, row and column i+1 stand for the node of the i-th smallest id
+     * @param idFile file where the id of the node of each row is written, one per line, or null
+     * @throws IOException if a file could not be written
+     */
+    public void toMatrixMarketFile(File matrix, File idFile) throws IOException {
+        writeMatrixMarket(matrix, idFile, true);
+    }
+
+    /**
+     * Each edge is written once in the DOT formalism, in the row of its node with the smallest id
+     * @param u internal index of the node owning the row
+     * @param e id of the edge
+     */
+    @Override
+    boolean dotListed(int u, int e) {
+        int other = edgeFrom.get(e) == u ? edgeTo.get(e) : edgeFrom.get(e);
+        return registry.idAt(u) <= registry.idAt(other);
     }
-    // TO DO : getTransitive
 
     /**
      * Returns a String representing the graph in the DOT formalism
      * @return a String representing the graph in the DOT formalism
      */
     public String toDotString() {
-        StringBuilder dot = new StringBuilder("graph {\n");
-        for (Map.Entry<Node, List<Node>> entry : adjList.entrySet()) {
-            dot.append("\t").append(entry.getKey().getId());
-            if(!entry.getValue().isEmpty()) dot.append(" -- ");
-            Collections.sort(entry.getValue());
-            for (Node n : entry.getValue()) {
-                dot.append(n.getId()).append(", ");
-            }
-            if (dot.charAt(dot.length() -1) == ' ') {
-                dot.setLength(dot.length() -2);
-            }
-            dot.append(";\n");
-        }
-        dot.append("}");
-        return dot.toString();
+        return toDotString("graph", " -- ");
     }
 
     /**
@@ -0,0 +1,123 @@
+package m1graf2020.bench;
+
+import m1graf2020.Edge;
+import m1graf2020.Graf;
+import m1graf2020.Node;
+
+import java.util.*;
+
+/**
+ * Compares the primitive adjacency store of Graf with the previous TreeMap&lt;Node, List&lt;Node&gt;&gt; store
+ * on an ingest / query / removal workload.
+ * Usage : java m1graf2020.bench.AdjacencyBenchmark [nbNodes] [nbEdges]
+ */
+public class AdjacencyBenchmark {
+
+    /**
+     * The previous adjacency store of Graf, kept only as a baseline
+     */
+    static class TreeMapGraf {
+        TreeMap<Node, List<Node>> adjList = new TreeMap<>();
+        List<Edge> edgeList = new ArrayList<>();
+
+        Node getNode(int id) {
+            Node n = new Node(id);
+            if (adjList.containsKey(n)) return n;
+            else return null;
+        }
+
+        void addEdge(int from_id, int to_id) {
+            if (getNode(from_id) == null) adjList.put(new Node(from_id), new ArrayList<>());
+            if (getNode(to_id) == null) adjList.put(new Node(to_id), new ArrayList<>());
+            edgeList.add(new Edge(new Node(from_id), new Node(to_id)));
+            adjList.get(new Node(from_id)).add(new Node(to_id));
+        }
+
+        boolean existsEdge(int u_id, int v_id) {
+            if (getNode(u_id) == null || getNode(v_id) == null) return false;
+            return adjList.get(new Node(u_id)).contains(new Node(v_id)) || adjList.get(new Node(v_id)).contains(new Node(u_id));
+        }
+
+        void removeEdge(int from_id, int to_id) {
+            if (getNode(from_id) != null && getNode(to_id) != null) {
+                adjList.get(new Node(from_id)).remove(new Node(to_id));
+                edgeList.removeIf(e -> e.getFrom().getId() == from_id && e.getTo().getId() == to_id);
+            }
+        }
+
+        long sumSuccessors() {
+            long sum = 0;
+            for (List<Node> successors : adjList.values()) {
+                for (Node n : successors) sum += n.getId();
+            }
+            return sum;
+        }
+    }
+
+    public static void main(String[] args) {
+        int nbNodes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int nbEdges = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        //removals are O(E) each on the TreeMap store, only a few of them are timed
+        int nbRemovals = Math.min(1_000, nbEdges);
+
+        Random random = new Random(42);
+        int[] from = new int[nbEdges];
+        int[] to = new int[nbEdges];
+        for (int i = 0; i < nbEdges; i++) {
+            from[i] = 1 + random.nextInt(nbNodes);
+            to[i] = 1 + random.nextInt(nbNodes);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + (round + 1));
+
+            long start = System.nanoTime();
+            TreeMapGraf old = new TreeMapGraf();
+            for (int i = 0; i < nbEdges; i++) old.addEdge(from[i], to[i]);
+            long oldAdd = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Graf g = new Graf();
+            for (int i = 0; i < nbEdges; i++) g.addEdge(from[i], to[i]);
+            long newAdd = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int oldFound = 0;
+            for (int i = 0; i < nbEdges; i++) if (old.existsEdge(to[i], from[i])) oldFound++;
+            long oldExists = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int newFound = 0;
+            for (int i = 0; i < nbEdges; i++) if (g.existsEdge(to[i], from[i])) newFound++;
+            long newExists = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long oldSum = old.sumSuccessors();
+            long oldScan = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long[] newSum = new long[1];
+            for (int id = 1; id <= nbNodes; id++) g.forEachSuccessor(id, s -> newSum[0] += s);
+            long newScan = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < nbRemovals; i++) old.removeEdge(from[i], to[i]);
+            long oldRemove = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < nbRemovals; i++) g.removeEdge(from[i], to[i]);
+            long newRemove = System.nanoTime() - start;
+
+            if (oldFound != newFound || oldSum != newSum[0]) throw new IllegalStateException("stores disagree");
+            print("addEdge x" + nbEdges, oldAdd, newAdd);
+            print("existsEdge x" + nbEdges, oldExists, newExists);
+            print("successor scan", oldScan, newScan);
+            print("removeEdge x" + nbRemovals, oldRemove, newRemove);
+        }
+    }
+
+    private static void print(String operation, long oldNanos, long newNanos) {
+        System.out.printf("  %-24s TreeMap %8.1f ms   primitive %8.1f ms   x%.1f%n",
+                operation, oldNanos / 1e6, newNanos / 1e6, (double) oldNanos / Math.max(1, newNanos));
+    }
+}
@@ -0,0 +1,80 @@
+package m1graf2020.bench;
+
+import m1graf2020.AllPairsShortestPaths;
+import m1graf2020.AllPairsShortestPaths.Method;
+import m1graf2020.FrozenGraf;
+import m1graf2020.GrafBuilder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the all-pairs shortest path methods on random weighted graphs of growing average degree : the blocked
+ * Floyd-Warshall algorithm, a Dijkstra search per node, and a plain Floyd-Warshall triple loop, and shows the method
+ * AUTO chooses for each graph.
+ * Usage : java m1graf2020.bench.AllPairsBenchmark [nbNodes]
+ */
+public class AllPairsBenchmark {
+
+    public static void main(String[] args) {
+        int nbNodes = args.length > 0 ? Integer.parseInt(args[0]) : 1500;
+        Random random = new Random(42);
+
+        for (int degree : new int[]{4, 64, 256, 512}) {
+            GrafBuilder builder = new GrafBuilder(nbNodes * degree);
+            for (int id = 1; id <= nbNodes; id++) builder.addNode(id);
+            for (int i = 0; i < nbNodes * degree; i++) {
+                //the weight only depends on the ends, so that parallel edges have the same weight
+                int u = 1 + random.nextInt(nbNodes);
+                int v = 1 + random.nextInt(nbNodes);
+                builder.addEdge(u, v, 1 + (u * 31 + v) % 100);
+            }
+            FrozenGraf g = builder.buildFrozen();
+            System.out.println(g.nbNodes() + " nodes, " + g.nbEdges() + " edges, AUTO chooses "
+                    + AllPairsShortestPaths.of(g, false).getMethod());
+
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                int[][] blocked = AllPairsShortestPaths.of(g, Method.FLOYD_WARSHALL, false).getDistances();
+                long blockedNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                int[][] dijkstra = AllPairsShortestPaths.of(g, Method.DIJKSTRA, false).getDistances();
+                long dijkstraNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                int[][] plain = plainFloydWarshall(g);
+                long plainNanos = System.nanoTime() - start;
+                if (!Arrays.deepEquals(blocked, dijkstra) || !Arrays.deepEquals(blocked, plain)) {
+                    throw new IllegalStateException("The methods found different distances");
+                }
+                System.out.printf("  floyd-warshall %8.1f ms   dijkstra %8.1f ms   plain floyd-warshall %8.1f ms%n",
+                        blockedNanos / 1e6, dijkstraNanos / 1e6, plainNanos / 1e6);
+            }
+        }
+    }
+
+    private static int[][] plainFloydWarshall(FrozenGraf g) {
+        int n = g.nbNodes();
+        int infinity = Integer.MAX_VALUE / 2;
+        int[][] d = new int[n][n];
+        for (int[] row : d) Arrays.fill(row, infinity);
+        for (int u = 0; u < n; u++) {
+            d[u][u] = 0;
+            for (int v : g.getSuccessorIds(g.idAt(u))) {
+                d[u][g.indexOf(v)] = Math.min(d[u][g.indexOf(v)], g.getWeight(g.idAt(u), v));
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (d[i][k] + d[k][j] < d[i][j]) d[i][j] = d[i][k] + d[k][j];
+                }
+            }
+        }
+        for (int[] row : d) {
+            for (int v = 0; v < n; v++) {
+                if (row[v] == infinity) row[v] = -1;
+            }
+        }
+        return d;
+    }
+}
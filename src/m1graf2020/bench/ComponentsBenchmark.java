@@ -0,0 +1,56 @@
+package m1graf2020.bench;
+
+import m1graf2020.FrozenGraf;
+import m1graf2020.GrafBuilder;
+import m1graf2020.StronglyConnectedComponents;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the strongly connected components found by the Tarjan algorithm in a single thread and by the parallel
+ * forward-backward and coloring method. The graph looks like a build dependency graph : mostly short forward edges,
+ * and a few backward edges closing cycles.
+ * Usage : java m1graf2020.bench.ComponentsBenchmark [nbNodes] [nbEdges]
+ */
+public class ComponentsBenchmark {
+
+    public static void main(String[] args) {
+        int nbNodes = args.length > 0 ? Integer.parseInt(args[0]) : 3_000_000;
+        int nbEdges = args.length > 1 ? Integer.parseInt(args[1]) : 9_000_000;
+
+        Random random = new Random(42);
+        GrafBuilder builder = new GrafBuilder(nbEdges);
+        for (int id = 1; id <= nbNodes; id++) builder.addNode(id);
+        for (int i = 0; i < nbEdges; i++) {
+            //edges mostly go a little forward, one out of a hundred goes backwards and closes a cycle
+            int u = 1 + random.nextInt(nbNodes);
+            int v = random.nextInt(100) == 0 ? u - random.nextInt(1000) : u + 1 + random.nextInt(1000);
+            if (v >= 1 && v <= nbNodes) builder.addEdge(u, v);
+        }
+        FrozenGraf g = builder.buildFrozen();
+        System.out.println(g.nbNodes() + " nodes, " + g.nbEdges() + " edges, "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            StronglyConnectedComponents tarjan = StronglyConnectedComponents.of(g, false);
+            long tarjanNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            StronglyConnectedComponents parallel = StronglyConnectedComponents.of(g, true);
+            long parallelNanos = System.nanoTime() - start;
+            if (tarjan.nbComponents() != parallel.nbComponents()) {
+                throw new IllegalStateException("The methods found a different number of components");
+            }
+            int largest = 0;
+            for (int k = 0; k < tarjan.nbComponents(); k++) largest = Math.max(largest, tarjan.size(k));
+            int[] sizes = new int[parallel.nbComponents()];
+            for (int c : parallel.getComponents()) sizes[c]++;
+            if (Arrays.stream(sizes).max().orElse(0) != largest) {
+                throw new IllegalStateException("The methods found different components");
+            }
+            System.out.printf("Round %d, %d components, the largest of %d nodes : tarjan %8.1f ms   parallel %8.1f ms%n",
+                    round + 1, tarjan.nbComponents(), largest, tarjanNanos / 1e6, parallelNanos / 1e6);
+        }
+    }
+}
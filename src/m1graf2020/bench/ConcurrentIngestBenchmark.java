@@ -0,0 +1,76 @@
+package m1graf2020.bench;
+
+import m1graf2020.ConcurrentGraf;
+import m1graf2020.Graf;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ingestion of edges from several partitions into a ConcurrentGraf, one writer thread per partition,
+ * with funnelling all the partitions through a single Graf guarded by one lock.
+ * Usage : java m1graf2020.bench.ConcurrentIngestBenchmark [nbThreads] [nbNodes] [nbEdgesPerThread]
+ */
+public class ConcurrentIngestBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int nbThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int nbNodes = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int nbEdges = args.length > 2 ? Integer.parseInt(args[2]) : 250_000;
+
+        Random random = new Random(42);
+        int[][] from = new int[nbThreads][nbEdges];
+        int[][] to = new int[nbThreads][nbEdges];
+        for (int t = 0; t < nbThreads; t++) {
+            for (int i = 0; i < nbEdges; i++) {
+                from[t][i] = 1 + random.nextInt(nbNodes);
+                to[t][i] = 1 + random.nextInt(nbNodes);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(nbThreads);
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + (round + 1) + ", " + nbThreads + " writers");
+
+            Graf locked = new Graf();
+            long start = System.nanoTime();
+            run(pool, nbThreads, t -> {
+                for (int i = 0; i < nbEdges; i++) {
+                    synchronized (locked) {
+                        locked.addEdge(from[t][i], to[t][i]);
+                    }
+                }
+            });
+            long lockedNanos = System.nanoTime() - start;
+
+            ConcurrentGraf concurrent = new ConcurrentGraf(4 * nbThreads);
+            start = System.nanoTime();
+            run(pool, nbThreads, t -> {
+                for (int i = 0; i < nbEdges; i++) concurrent.addEdge(from[t][i], to[t][i]);
+            });
+            long concurrentNanos = System.nanoTime() - start;
+
+            System.out.printf("  addEdge x%-12d single lock %8.1f ms   striped %8.1f ms   x%.1f%n",
+                    nbThreads * nbEdges, lockedNanos / 1e6, concurrentNanos / 1e6,
+                    (double) lockedNanos / Math.max(1, concurrentNanos));
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private interface Partition {
+        void ingest(int t);
+    }
+
+    private static void run(ExecutorService pool, int nbThreads, Partition partition) throws Exception {
+        Future<?>[] futures = new Future<?>[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            int partitionId = t;
+            futures[t] = pool.submit(() -> partition.ingest(partitionId));
+        }
+        for (Future<?> future : futures) future.get();
+    }
+}
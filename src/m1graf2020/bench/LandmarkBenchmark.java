@@ -0,0 +1,94 @@
+package m1graf2020.bench;
+
+import m1graf2020.FrozenGraf;
+import m1graf2020.GrafBuilder;
+import m1graf2020.LandmarkIndex;
+import m1graf2020.Route;
+import m1graf2020.ShortestPaths;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures the build, save and load times of a LandmarkIndex, then compares the number of nodes settled and the
+ * latency of its queries with a plain Dijkstra search, which is an index without landmarks, and with a bidirectional
+ * Dijkstra search. The graph is a road-like grid with random weights and a few missing streets.
+ * Usage : java m1graf2020.bench.LandmarkBenchmark [side] [nbLandmarks] [nbQueries]
+ */
+public class LandmarkBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int nbLandmarks = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int nbQueries = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        Random random = new Random(42);
+        GrafBuilder builder = new GrafBuilder(4 * side * side);
+        for (int id = 1; id <= side * side; id++) builder.addNode(id);
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int id = 1 + row * side + column;
+                //each street goes both ways, with a different time in each direction
+                if (column + 1 < side && random.nextInt(10) != 0) {
+                    builder.addEdge(id, id + 1, 10 + random.nextInt(90));
+                    builder.addEdge(id + 1, id, 10 + random.nextInt(90));
+                }
+                if (row + 1 < side && random.nextInt(10) != 0) {
+                    builder.addEdge(id, id + side, 10 + random.nextInt(90));
+                    builder.addEdge(id + side, id, 10 + random.nextInt(90));
+                }
+            }
+        }
+        FrozenGraf g = builder.buildFrozen();
+        int[] from = new int[nbQueries];
+        int[] to = new int[nbQueries];
+        for (int i = 0; i < nbQueries; i++) {
+            from[i] = 1 + random.nextInt(side * side);
+            to[i] = 1 + random.nextInt(side * side);
+        }
+
+        File file = File.createTempFile("landmarks", ".alt");
+        file.deleteOnExit();
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + (round + 1) + ", " + g.nbNodes() + " nodes, " + g.nbEdges() + " edges");
+
+            long start = System.nanoTime();
+            LandmarkIndex index = new LandmarkIndex(g, nbLandmarks);
+            long buildNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            index.save(file);
+            long saveNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            index = LandmarkIndex.load(g, file);
+            long loadNanos = System.nanoTime() - start;
+            System.out.printf("  build %8.1f ms   save %6.1f ms   load %6.1f ms   %d landmarks, %d KB%n",
+                    buildNanos / 1e6, saveNanos / 1e6, loadNanos / 1e6, nbLandmarks, file.length() >> 10);
+
+            LandmarkIndex plain = new LandmarkIndex(g, 0);
+            long total = measure("dijkstra", nbQueries, from, to, plain::route);
+            long bidirectional = measure("bidirectional", nbQueries, from, to, (s, t) -> ShortestPaths.between(g, s, t));
+            long alt = measure("alt", nbQueries, from, to, index::route);
+            if (bidirectional != total || alt != total) throw new IllegalStateException("The searches found different distances");
+        }
+    }
+
+    private interface Query {
+        Route run(int from_id, int to_id);
+    }
+
+    private static long measure(String name, int nbQueries, int[] from, int[] to, Query query) {
+        long settled = 0;
+        long total = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < nbQueries; i++) {
+            Route route = query.run(from[i], to[i]);
+            settled += route.nbSettled();
+            total += route.getDistance();
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("  %-14s %10.1f us/query   %10.1f nodes settled/query%n",
+                name, nanos / 1e3 / nbQueries, (double) settled / nbQueries);
+        return total;
+    }
+}
@@ -0,0 +1,83 @@
+package m1graf2020.bench;
+
+import m1graf2020.FrozenGraf;
+import m1graf2020.GrafBuilder;
+import m1graf2020.ReachabilityIndex;
+
+import java.util.Random;
+
+/**
+ * Measures the build time and the size of a ReachabilityIndex, then compares its query latency with a breadth first
+ * search per query. The graph is a random graph with mostly short forward edges, so it has long paths and a few cycles.
+ * Usage : java m1graf2020.bench.ReachabilityBenchmark [nbNodes] [nbEdges] [nbQueries]
+ */
+public class ReachabilityBenchmark {
+
+    public static void main(String[] args) {
+        int nbNodes = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int nbEdges = args.length > 1 ? Integer.parseInt(args[1]) : 400_000;
+        int nbQueries = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+
+        Random random = new Random(42);
+        GrafBuilder builder = new GrafBuilder(nbEdges);
+        for (int id = 1; id <= nbNodes; id++) builder.addNode(id);
+        for (int i = 0; i < nbEdges; i++) {
+            //edges mostly go a little forward, one out of a thousand goes backwards and closes a cycle
+            int u = 1 + random.nextInt(nbNodes);
+            int v = random.nextInt(1000) == 0 ? u - random.nextInt(1000) : u + 1 + random.nextInt(1000);
+            if (v >= 1 && v <= nbNodes) builder.addEdge(u, v);
+        }
+        FrozenGraf g = builder.buildFrozen();
+        int[] from = new int[nbQueries];
+        int[] to = new int[nbQueries];
+        for (int i = 0; i < nbQueries; i++) {
+            from[i] = 1 + random.nextInt(nbNodes);
+            to[i] = 1 + random.nextInt(nbNodes);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + (round + 1) + ", " + g.nbNodes() + " nodes, " + g.nbEdges() + " edges");
+
+            long start = System.nanoTime();
+            ReachabilityIndex index = new ReachabilityIndex(g);
+            long buildNanos = System.nanoTime() - start;
+            System.out.printf("  build %8.1f ms   %d components   %d label entries (%.1f per node)%n",
+                    buildNanos / 1e6, index.nbComponents(), index.labelSize(), (double) index.labelSize() / g.nbNodes());
+
+            int reached = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < nbQueries; i++) {
+                if (index.canReach(from[i], to[i])) reached++;
+            }
+            long indexNanos = System.nanoTime() - start;
+
+            int nbSearches = Math.max(1, nbQueries / 1000);
+            int[] seen = new int[nbNodes + 1];
+            int[] queue = new int[nbNodes];
+            start = System.nanoTime();
+            for (int i = 0; i < nbSearches; i++) bfs(g, from[i], to[i], i + 1, seen, queue);
+            long bfsNanos = System.nanoTime() - start;
+
+            System.out.printf("  canReach x%-9d %8.1f ns/query (%d reachable)   bfs x%-6d %10.1f ns/query%n",
+                    nbQueries, (double) indexNanos / nbQueries, reached, nbSearches, (double) bfsNanos / nbSearches);
+        }
+    }
+
+    private static boolean bfs(FrozenGraf g, int source, int target, int stamp, int[] seen, int[] queue) {
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        seen[source] = stamp;
+        while (head < tail) {
+            int u = queue[head++];
+            if (u == target) return true;
+            for (int v : g.getSuccessorIds(u)) {
+                if (seen[v] != stamp) {
+                    seen[v] = stamp;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,57 @@
+package m1graf2020.bench;
+
+import m1graf2020.DepthFirstSearch;
+import m1graf2020.FrozenGraf;
+import m1graf2020.Graf;
+import m1graf2020.GrafBuilder;
+import m1graf2020.TopologicalOrder;
+
+import java.util.Random;
+
+/**
+ * Measures the topological order and the level decomposition of a random directed acyclic graph, as a build dependency
+ * graph, from a frozen graph and from a Graf which has to be frozen first, and compares it with the reversed
+ * post-order of a depth first search.
+ * Usage : java m1graf2020.bench.TopologicalBenchmark [nbNodes] [nbEdges]
+ */
+public class TopologicalBenchmark {
+
+    public static void main(String[] args) {
+        int nbNodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int nbEdges = args.length > 1 ? Integer.parseInt(args[1]) : 4_000_000;
+
+        Random random = new Random(42);
+        GrafBuilder builder = new GrafBuilder(nbEdges);
+        for (int id = 1; id <= nbNodes; id++) builder.addNode(id);
+        for (int i = 0; i < nbEdges; i++) {
+            //a job depends on jobs of lower ids, most of them close to it
+            int v = 2 + random.nextInt(nbNodes - 1);
+            int u = random.nextInt(10) == 0 ? 1 + random.nextInt(v - 1) : Math.max(1, v - 1 - random.nextInt(1000));
+            builder.addEdge(u, v);
+        }
+        Graf graf = builder.build();
+        FrozenGraf g = graf.freeze();
+        System.out.println(g.nbNodes() + " nodes, " + g.nbEdges() + " edges");
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            TopologicalOrder order = TopologicalOrder.of(g);
+            long frozenNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            TopologicalOrder fromGraf = graf.topologicalOrder();
+            long grafNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            DepthFirstSearch dfs = DepthFirstSearch.of(g);
+            long dfsNanos = System.nanoTime() - start;
+            if (order.hasCycle() || fromGraf.getOrder().length != g.nbNodes() || dfs.getPostOrder().length != g.nbNodes()) {
+                throw new IllegalStateException("The graph is acyclic, all the nodes should be ordered");
+            }
+            int widest = 0;
+            for (int k = 0; k < order.nbLevels(); k++) {
+                widest = Math.max(widest, order.getLevelOffsets()[k + 1] - order.getLevelOffsets()[k]);
+            }
+            System.out.printf("Round %d, %d levels, the widest of %d nodes : frozen %7.1f ms   graf %7.1f ms   dfs %7.1f ms%n",
+                    round + 1, order.nbLevels(), widest, frozenNanos / 1e6, grafNanos / 1e6, dfsNanos / 1e6);
+        }
+    }
+}